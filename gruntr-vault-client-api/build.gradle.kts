@@ -33,6 +33,7 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter:${junitVersion}")
     // https://mvnrepository.com/artifact/com.squareup.okhttp3/mockwebserver
     testImplementation("com.squareup.okhttp3:mockwebserver:${mockWebServerVersion}")
+    testImplementation("com.squareup.okhttp3:okhttp-tls:${mockWebServerVersion}")
 
 }
 
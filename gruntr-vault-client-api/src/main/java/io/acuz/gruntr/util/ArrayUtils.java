@@ -40,4 +40,23 @@ public final class ArrayUtils {
 
         return chars;
     }
+
+    /**
+     * Facilitator to convert an array of chars to an array of bytes, the counterpart of {@link #toCharArray(byte[])}.
+     * Only meant for single byte (ASCII/ISO-8859-1) content such as Vault ciphertexts, wider chars are truncated.
+     *
+     * @param chars the char array to convert
+     * @return the input chars as a byte array
+     */
+    public static byte[] toByteArray(char[] chars) {
+        Objects.requireNonNull(chars);
+
+        var bytes = new byte[chars.length];
+
+        for (int i = 0; i < chars.length; i++) {
+            bytes[i] = (byte) chars[i];
+        }
+
+        return bytes;
+    }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+/**
+ * The outcome of a single value in a transit batch request: either the output value or the error Vault reported
+ * for it.
+ */
+final class BatchItem {
+    private final char[] value;
+    private final String error;
+
+    private BatchItem(char[] value, String error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    static BatchItem success(char[] value) {
+        return new BatchItem(value, null);
+    }
+
+    static BatchItem failure(String error) {
+        return new BatchItem(null, error);
+    }
+
+    char[] getValue() {
+        return value;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    boolean isFailure() {
+        return null != error;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs a list of asynchronous tasks with at most {@code limit} of them in flight at any time. The resulting future
+ * completes with the results in task order, or with the first failure, in which case the tasks that are still in
+ * flight are cancelled and the remaining ones are never started. Cancelling the resulting future has the same effect.
+ *
+ * @param <T> the result type of a single task
+ */
+final class BoundedDispatcher<T> {
+    private final List<Supplier<CompletableFuture<T>>> tasks;
+    private final int limit;
+    private final List<T> results;
+    private final Set<CompletableFuture<T>> inFlight = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+    private int next;
+    private int running;
+    private int completed;
+
+    private BoundedDispatcher(List<Supplier<CompletableFuture<T>>> tasks, int limit) {
+        this.tasks = tasks;
+        this.limit = limit;
+        this.results = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+    }
+
+    static <T> CompletableFuture<List<T>> dispatch(List<Supplier<CompletableFuture<T>>> tasks, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit should be at least 1, got " + limit);
+        }
+
+        if (tasks.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        var dispatcher = new BoundedDispatcher<>(tasks, limit);
+        dispatcher.result.whenComplete((value, throwable) -> {
+            if (null != throwable) {
+                dispatcher.inFlight.forEach(future -> future.cancel(true));
+            }
+        });
+        dispatcher.launch();
+
+        return dispatcher.result;
+    }
+
+    private void launch() {
+        while (true) {
+            int index;
+
+            synchronized (this) {
+                if (result.isDone() || next >= tasks.size() || running >= limit) {
+                    return;
+                }
+
+                index = next++;
+                running++;
+            }
+
+            CompletableFuture<T> future;
+
+            try {
+                future = tasks.get(index).get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            inFlight.add(future);
+            future.whenComplete((value, throwable) -> complete(index, future, value, throwable));
+
+            if (result.isDone()) {
+                // completed (or failed) while the task was being registered
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void complete(int index, CompletableFuture<T> future, T value, Throwable throwable) {
+        inFlight.remove(future);
+
+        if (null != throwable) {
+            result.completeExceptionally(throwable instanceof CompletionException && null != throwable.getCause()
+                    ? throwable.getCause()
+                    : throwable);
+            return;
+        }
+
+        boolean done;
+
+        synchronized (this) {
+            results.set(index, value);
+            running--;
+            done = ++completed == tasks.size();
+        }
+
+        if (done) {
+            result.complete(results);
+        } else {
+            launch();
+        }
+    }
+}
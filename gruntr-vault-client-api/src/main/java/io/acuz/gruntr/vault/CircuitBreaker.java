@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending requests to Vault while it is clearly down. After {@code failureThreshold} consecutive failures
+ * (connection failures and retryable status codes, see {@link RetryPolicy}) the breaker opens and requests fail
+ * immediately. Once the open duration has passed, a single request is let through: the breaker closes when it
+ * succeeds and opens again when it fails.
+ * <p>
+ * A breaker can be shared by the clients of the same Vault.
+ */
+public final class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final LongSupplier clock;
+
+    private CircuitBreaker(Builder builder) {
+        this.failureThreshold = builder.failureThreshold;
+        this.openDurationNanos = builder.openDuration.toNanos();
+        this.clock = builder.clock;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * @return true if the request may be sent
+     */
+    boolean tryAcquire() {
+        var current = state.get();
+
+        if (State.CLOSED == current) {
+            return true;
+        }
+
+        // open, or half open with a probe that never reported back (e.g. cancelled): let a new probe through
+        var now = clock.getAsLong();
+        var since = openedAt.get();
+
+        return now - since >= openDurationNanos
+                && openedAt.compareAndSet(since, now)
+                && (state.compareAndSet(current, State.HALF_OPEN) || State.HALF_OPEN == state.get());
+    }
+
+    void onSuccess() {
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+
+    void onFailure() {
+        if (State.HALF_OPEN == state.get() || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt.set(clock.getAsLong());
+            state.set(State.OPEN);
+        }
+    }
+
+    public static final class Builder {
+        private int failureThreshold = 5;
+        private Duration openDuration = Duration.ofSeconds(10);
+        private LongSupplier clock = System::nanoTime;
+
+        private Builder() {
+            //no-op
+        }
+
+        /**
+         * @param failureThreshold the number of consecutive failures opening the breaker, 5 by default
+         * @return the builder
+         */
+        public Builder failureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+
+            return this;
+        }
+
+        /**
+         * @param openDuration how long requests fail immediately before one is tried again, 10 seconds by default
+         * @return the builder
+         */
+        public Builder openDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+
+            return this;
+        }
+
+        Builder clock(LongSupplier clock) {
+            this.clock = clock;
+
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            validate();
+            return new CircuitBreaker(this);
+        }
+
+        private void validate() {
+            Objects.requireNonNull(openDuration, "Open duration should not be null");
+            Objects.requireNonNull(clock, "Clock should not be null");
+
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("Failure threshold should be at least 1, got " + failureThreshold);
+            }
+
+            if (openDuration.isNegative() || openDuration.isZero()) {
+                throw new IllegalArgumentException("Open duration should be positive, got " + openDuration);
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limits the requests in flight to Vault, and the number of values sent in one batch, to what Vault sustains. Both
+ * follow an additive increase, multiplicative decrease (AIMD) scheme: every successful request raises the limit by
+ * {@code 1 / limit} (about one request per round trip of the whole window) and a full batch raises the batch size by
+ * one, while a request that Vault throttled (429), could not serve (503) or that failed to get a response multiplies
+ * both by the backoff ratio. The limit also backs off when the smoothed latency exceeds the latency tolerance times
+ * the lowest latency seen recently, before Vault starts rejecting requests. Backing off happens at most once per
+ * window of requests: the requests in flight at that moment were sent at the old limit and are likely to fail as
+ * well.
+ * <p>
+ * Requests that exceed the limit wait for a request in flight to complete. A limiter keeps its state, it should be
+ * shared by the clients of the same Vault, so that together they stay within its rate limit quotas.
+ */
+public final class ConcurrencyLimiter {
+    private static final int BASELINE_WINDOW = 100;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private double limit;
+    private double batchSize;
+    private int inFlight;
+    private int sinceBackoff;
+    private int backoffWindow;
+    private long baseline;
+    private long windowMinimum = Long.MAX_VALUE;
+    private int windowSamples;
+    private double smoothedLatency;
+
+    private ConcurrencyLimiter(Builder builder) {
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.minBatchSize = builder.minBatchSize;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.backoffRatio = builder.backoffRatio;
+        this.latencyTolerance = builder.latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, builder.initialLimit));
+        this.batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, builder.initialBatchSize));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the current maximum number of requests in flight
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return the current maximum number of values in a batch request
+     */
+    public synchronized int getBatchSize() {
+        return (int) batchSize;
+    }
+
+    /**
+     * @return the number of requests in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return a future that completes once the request can be sent. Cancelling it gives up the place in line, once
+     * completed one of the {@code on...} methods must be called when the request completes
+     */
+    CompletableFuture<Void> acquire() {
+        synchronized (this) {
+            if (inFlight < (int) limit && waiting.isEmpty()) {
+                inFlight++;
+
+                return CompletableFuture.completedFuture(null);
+            }
+
+            var permit = new CompletableFuture<Void>();
+            waiting.add(permit);
+
+            return permit;
+        }
+    }
+
+    /**
+     * The request got a response that does not signal overload.
+     *
+     * @param latencyNanos the latency of the request
+     * @param batchSize    the number of values in the request
+     */
+    void onSuccess(long latencyNanos, int batchSize) {
+        synchronized (this) {
+            inFlight--;
+            sinceBackoff++;
+            observe(latencyNanos);
+
+            if (latencyTolerance > 0 && smoothedLatency > latencyTolerance * baseline) {
+                backoff(false);
+            } else {
+                this.limit = Math.min(maxLimit, this.limit + 1 / this.limit);
+
+                if (batchSize >= (int) this.batchSize) {
+                    this.batchSize = Math.min(maxBatchSize, this.batchSize + 1);
+                }
+            }
+        }
+
+        dispatch();
+    }
+
+    /**
+     * The request was throttled or failed, Vault is overloaded.
+     */
+    void onOverload() {
+        synchronized (this) {
+            inFlight--;
+            sinceBackoff++;
+            backoff(true);
+        }
+
+        dispatch();
+    }
+
+    /**
+     * The request was cancelled, it says nothing about the load of Vault.
+     */
+    void onCancel() {
+        synchronized (this) {
+            inFlight--;
+        }
+
+        dispatch();
+    }
+
+    private void observe(long latencyNanos) {
+        windowMinimum = Math.min(windowMinimum, latencyNanos);
+
+        if (0 == baseline || latencyNanos < baseline) {
+            baseline = latencyNanos;
+        }
+
+        if (++windowSamples >= BASELINE_WINDOW) {
+            // let the baseline follow Vault when it got slower for good
+            baseline = windowMinimum;
+            windowMinimum = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+
+        smoothedLatency = 0 == smoothedLatency
+                ? latencyNanos
+                : smoothedLatency + SMOOTHING * (latencyNanos - smoothedLatency);
+    }
+
+    private void backoff(boolean includeBatchSize) {
+        if (sinceBackoff <= backoffWindow) {
+            return;
+        }
+
+        // the requests in flight were sent at the old limit, their outcome should not back off again
+        sinceBackoff = 0;
+        backoffWindow = inFlight;
+        limit = Math.max(minLimit, limit * backoffRatio);
+
+        if (includeBatchSize) {
+            batchSize = Math.max(minBatchSize, batchSize * backoffRatio);
+        }
+    }
+
+    /**
+     * Lets waiting requests through while the limit allows it. Permits are completed outside the lock, as completing
+     * them sends the request.
+     */
+    private void dispatch() {
+        while (true) {
+            CompletableFuture<Void> next;
+
+            synchronized (this) {
+                if (inFlight >= (int) limit || waiting.isEmpty()) {
+                    return;
+                }
+
+                next = waiting.poll();
+                inFlight++;
+            }
+
+            if (!next.complete(null)) {
+                // cancelled while waiting
+                synchronized (this) {
+                    inFlight--;
+                }
+            }
+        }
+    }
+
+    public static final class Builder {
+        private int minLimit = 1;
+        private int maxLimit = 64;
+        private int initialLimit = 4;
+        private int minBatchSize = 1;
+        private int maxBatchSize = 250;
+        private int initialBatchSize = 10;
+        private double backoffRatio = 0.5;
+        private double latencyTolerance = 2;
+
+        private Builder() {
+            //no-op
+        }
+
+        /**
+         * @param minLimit the lowest number of requests in flight the limit backs off to, 1 by default
+         * @return the builder
+         */
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+
+            return this;
+        }
+
+        /**
+         * @param maxLimit the highest number of requests in flight, 64 by default
+         * @return the builder
+         */
+        public Builder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+
+            return this;
+        }
+
+        /**
+         * @param initialLimit the number of requests in flight to start with, 4 by default
+         * @return the builder
+         */
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+
+            return this;
+        }
+
+        /**
+         * @param minBatchSize the lowest batch size the batch size backs off to, 1 by default
+         * @return the builder
+         */
+        public Builder minBatchSize(int minBatchSize) {
+            this.minBatchSize = minBatchSize;
+
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize the highest batch size, 250 by default
+         * @return the builder
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+
+            return this;
+        }
+
+        /**
+         * @param initialBatchSize the batch size to start with, 10 by default
+         * @return the builder
+         */
+        public Builder initialBatchSize(int initialBatchSize) {
+            this.initialBatchSize = initialBatchSize;
+
+            return this;
+        }
+
+        /**
+         * @param backoffRatio the factor the limit and batch size are multiplied by when backing off, 0.5 by default
+         * @return the builder
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+
+            return this;
+        }
+
+        /**
+         * @param latencyTolerance backs off when the latency grows beyond this multiple of the lowest recent latency,
+         *                         2 by default, 0 only backs off on throttled or failed requests
+         * @return the builder
+         */
+        public Builder latencyTolerance(double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+
+            return this;
+        }
+
+        public ConcurrencyLimiter build() {
+            validate();
+            return new ConcurrencyLimiter(this);
+        }
+
+        private void validate() {
+            if (minLimit < 1 || maxLimit < minLimit) {
+                throw new IllegalArgumentException("Limits should be at least 1 and ordered, got " + minLimit + " and " + maxLimit);
+            }
+
+            if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+                throw new IllegalArgumentException("Batch sizes should be at least 1 and ordered, got " + minBatchSize + " and " + maxBatchSize);
+            }
+
+            if (backoffRatio <= 0 || backoffRatio >= 1) {
+                throw new IllegalArgumentException("Backoff ratio should be between 0 and 1, got " + backoffRatio);
+            }
+
+            if (latencyTolerance != 0 && latencyTolerance <= 1) {
+                throw new IllegalArgumentException("Latency tolerance should be 0 or above 1, got " + latencyTolerance);
+            }
+        }
+    }
+}
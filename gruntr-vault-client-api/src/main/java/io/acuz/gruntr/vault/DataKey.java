@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import java.util.Arrays;
+
+/**
+ * A data key generated by the transit {@code datakey/plaintext} endpoint: the key itself and the same key wrapped
+ * (encrypted) by the transit key. The plaintext key should be wiped as soon as it is no longer needed.
+ */
+final class DataKey {
+    private final byte[] plaintext;
+    private final char[] ciphertext;
+
+    DataKey(byte[] plaintext, char[] ciphertext) {
+        this.plaintext = plaintext;
+        this.ciphertext = ciphertext;
+    }
+
+    byte[] getPlaintext() {
+        return plaintext;
+    }
+
+    char[] getCiphertext() {
+        return ciphertext;
+    }
+
+    void wipe() {
+        Arrays.fill(plaintext, (byte) 0);
+    }
+}
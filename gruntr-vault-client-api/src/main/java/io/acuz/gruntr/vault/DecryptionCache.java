@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-memory cache of decrypted values, keyed by ciphertext. Entries expire after a fixed time to live and
+ * are evicted oldest first when the maximum number of entries or the maximum size is exceeded. The plaintext of an
+ * entry is wiped when it is evicted, expires or gets replaced, callers always receive a copy.
+ * <p>
+ * A cache can be shared by several {@link VaultTransitRestClient}s, entries are scoped to the Vault host, transit
+ * path and key of the client that decrypted them.
+ */
+public final class DecryptionCache {
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong size = new AtomicLong();
+    private final int maximumEntries;
+    private final long maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier clock;
+
+    private DecryptionCache(Builder builder) {
+        this.maximumEntries = builder.maximumEntries;
+        this.maximumSize = builder.maximumSize;
+        this.timeToLiveNanos = builder.timeToLive.toNanos();
+        this.clock = builder.clock;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    static String key(String host, String transitPath, String transitKeyName, char[] ciphertext) {
+        return new StringBuilder(host.length() + transitPath.length() + transitKeyName.length() + ciphertext.length + 3)
+                .append(host).append('|')
+                .append(transitPath).append('|')
+                .append(transitKeyName).append('|')
+                .append(ciphertext)
+                .toString();
+    }
+
+    /**
+     * @return a copy of the cached plaintext, or null when absent or expired
+     */
+    char[] get(String key) {
+        purgeExpired();
+
+        var entry = entries.get(key);
+
+        if (null == entry) {
+            return null;
+        }
+
+        if (entry.isExpired(clock.getAsLong())) {
+            remove(entry);
+
+            return null;
+        }
+
+        return entry.copyValue();
+    }
+
+    /**
+     * Stores a copy of the plaintext.
+     */
+    void put(String key, char[] plaintext) {
+        var entry = new Entry(key, plaintext.clone(), clock.getAsLong() + timeToLiveNanos);
+        var previous = entries.put(key, entry);
+
+        if (null != previous) {
+            wipe(previous);
+        }
+
+        insertionOrder.add(entry);
+        size.addAndGet(entry.size());
+
+        purgeExpired();
+        evict();
+    }
+
+    /**
+     * Removes and wipes all entries.
+     */
+    public void invalidateAll() {
+        Entry entry;
+
+        while (null != (entry = insertionOrder.poll())) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Removes and wipes the entries that have expired. Expired entries are also purged whenever the cache is used,
+     * calling this method wipes them when the cache is idle.
+     */
+    public void cleanUp() {
+        purgeExpired();
+    }
+
+    /**
+     * @return the number of entries in the cache, including expired entries that were not purged yet
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void purgeExpired() {
+        var now = clock.getAsLong();
+        Entry head;
+
+        // all entries share the same time to live, so the oldest entry expires first
+        while (null != (head = insertionOrder.peek()) && (head.isExpired(now) || head.isWiped())) {
+            if (insertionOrder.remove(head)) {
+                remove(head);
+            }
+        }
+    }
+
+    private void evict() {
+        while (entries.size() > maximumEntries || size.get() > maximumSize) {
+            var eldest = insertionOrder.poll();
+
+            if (null == eldest) {
+                return;
+            }
+
+            remove(eldest);
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entries.remove(entry.key, entry)) {
+            wipe(entry);
+        }
+    }
+
+    private void wipe(Entry entry) {
+        if (entry.wipe()) {
+            size.addAndGet(-entry.size());
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final char[] value;
+        private final long expiresAt;
+        private boolean wiped;
+
+        private Entry(String key, char[] value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        private long size() {
+            return 2L * value.length;
+        }
+
+        private synchronized boolean isWiped() {
+            return wiped;
+        }
+
+        private synchronized char[] copyValue() {
+            return wiped ? null : value.clone();
+        }
+
+        private synchronized boolean wipe() {
+            if (wiped) {
+                return false;
+            }
+
+            Arrays.fill(value, '\0');
+            wiped = true;
+
+            return true;
+        }
+    }
+
+    public static final class Builder {
+        private int maximumEntries = 10_000;
+        private long maximumSize = Long.MAX_VALUE;
+        private Duration timeToLive = Duration.ofMinutes(5);
+        private LongSupplier clock = System::nanoTime;
+
+        private Builder() {
+            //no-op
+        }
+
+        /**
+         * @param maximumEntries the maximum number of cached values, 10 000 by default
+         * @return the builder
+         */
+        public Builder maximumEntries(int maximumEntries) {
+            this.maximumEntries = maximumEntries;
+
+            return this;
+        }
+
+        /**
+         * @param maximumSize the maximum size in bytes of all cached plaintexts together, unbounded by default
+         * @return the builder
+         */
+        public Builder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+
+            return this;
+        }
+
+        /**
+         * @param timeToLive how long a decrypted value is kept, 5 minutes by default
+         * @return the builder
+         */
+        public Builder timeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+
+            return this;
+        }
+
+        Builder clock(LongSupplier clock) {
+            this.clock = clock;
+
+            return this;
+        }
+
+        public DecryptionCache build() {
+            validate();
+            return new DecryptionCache(this);
+        }
+
+        private void validate() {
+            Objects.requireNonNull(timeToLive, "Time to live should not be null");
+            Objects.requireNonNull(clock, "Clock should not be null");
+
+            if (maximumEntries < 1) {
+                throw new IllegalArgumentException("Maximum entries should be at least 1, got " + maximumEntries);
+            }
+
+            if (maximumSize < 1) {
+                throw new IllegalArgumentException("Maximum size should be at least 1, got " + maximumSize);
+            }
+
+            if (timeToLive.isNegative() || timeToLive.isZero()) {
+                throw new IllegalArgumentException("Time to live should be positive, got " + timeToLive);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import io.acuz.gruntr.vault.exception.VaultException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Encrypts property values locally with AES-GCM, using a data key of the transit engine. A value is written as
+ * {@code gruntr:v1:<base64(iv | ciphertext | tag)>} and its property key is bound to it as additional authenticated
+ * data, so that encrypted values cannot be swapped between keys.
+ */
+final class EnvelopeCipher {
+    static final String PREFIX = "gruntr:";
+
+    private static final String VERSION_PREFIX = PREFIX + "v1:";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String ALGORITHM = "AES";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private EnvelopeCipher() {
+        //no-op
+    }
+
+    static char[] encrypt(byte[] key, String propertyKey, byte[] plaintext) throws VaultException {
+        var iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+
+        try {
+            var cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, ALGORITHM), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(propertyKey.getBytes(StandardCharsets.UTF_8));
+
+            var output = ByteBuffer.allocate(IV_LENGTH + cipher.getOutputSize(plaintext.length));
+            output.put(iv);
+            cipher.doFinal(ByteBuffer.wrap(plaintext), output);
+
+            return (VERSION_PREFIX + Base64.getEncoder().encodeToString(output.array())).toCharArray();
+        } catch (GeneralSecurityException e) {
+            throw new VaultException("Unable to encrypt property '" + propertyKey + "'", e);
+        }
+    }
+
+    /**
+     * @return the plaintext, to be wiped by the caller
+     * @throws VaultException when the value is malformed, or was not encrypted with this key for this property key
+     */
+    static byte[] decrypt(byte[] key, String propertyKey, String value) throws VaultException {
+        if (!value.startsWith(VERSION_PREFIX)) {
+            throw new VaultException("Unable to decrypt property '" + propertyKey + "', unsupported format");
+        }
+
+        byte[] input;
+
+        try {
+            input = Base64.getDecoder().decode(value.substring(VERSION_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new VaultException("Unable to decrypt property '" + propertyKey + "', invalid encoding", e);
+        }
+
+        if (input.length < IV_LENGTH + TAG_LENGTH_BITS / 8) {
+            throw new VaultException("Unable to decrypt property '" + propertyKey + "', value is truncated");
+        }
+
+        try {
+            var cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, ALGORITHM), new GCMParameterSpec(TAG_LENGTH_BITS, input, 0, IV_LENGTH));
+            cipher.updateAAD(propertyKey.getBytes(StandardCharsets.UTF_8));
+
+            return cipher.doFinal(input, IV_LENGTH, input.length - IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new VaultException("Unable to decrypt property '" + propertyKey + "', was it tampered with?", e);
+        } finally {
+            Arrays.fill(input, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * When to send a duplicate of a decrypt request that is slow to answer. The first successful response is used and
+ * the other request is cancelled.
+ * <p>
+ * The hedge is sent after a fixed delay, or, when a percentile is set, after that percentile of the latencies of the
+ * last {@value #WINDOW} requests (the fixed delay is used until {@value #MIN_SAMPLES} requests completed, the
+ * percentile is recomputed every {@value #RECOMPUTE_EVERY} requests after that). Hedging at the 95th percentile only
+ * duplicates the slowest 5% of the requests, while removing most of the tail latency. Only requests for a single
+ * value are hedged, a duplicate of a batch would double the load of the whole batch.
+ * <p>
+ * A budget caps the extra load: every request earns a fraction of a hedge, e.g. 0.05 allows one hedge per 20
+ * requests, and at most {@value #BURST} hedges can be saved up. A policy keeps latencies and budget, it can be shared
+ * by the clients of the same Vault.
+ */
+public final class HedgingPolicy {
+    private static final int WINDOW = 1024;
+    private static final int MIN_SAMPLES = 32;
+    private static final int RECOMPUTE_EVERY = 64;
+    private static final int BURST = 10;
+    private static final long TOKEN = 1_000_000;
+
+    private final long fixedDelayNanos;
+    private final double percentile;
+    private final long credit;
+    private final AtomicLongArray latencies = new AtomicLongArray(WINDOW);
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong(BURST * TOKEN);
+    private volatile long delayNanos;
+
+    private HedgingPolicy(Builder builder) {
+        this.fixedDelayNanos = builder.delay.toNanos();
+        this.percentile = builder.percentile;
+        this.credit = Math.round(builder.budget * TOKEN);
+        this.delayNanos = this.fixedDelayNanos;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the current delay before a hedge is sent
+     */
+    public Duration getDelay() {
+        return Duration.ofNanos(delayNanos);
+    }
+
+    long delayNanos() {
+        return delayNanos;
+    }
+
+    /**
+     * Earns the budget of a request, called once per hedgeable request.
+     */
+    void onRequest() {
+        tokens.accumulateAndGet(credit, (current, earned) -> Math.min(BURST * TOKEN, current + earned));
+    }
+
+    /**
+     * @return true if the budget allows a hedge, which is then spent
+     */
+    boolean tryAcquire() {
+        var current = tokens.get();
+
+        while (current >= TOKEN) {
+            if (tokens.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+
+            current = tokens.get();
+        }
+
+        return false;
+    }
+
+    /**
+     * Records the latency of a successful request, the delay follows the percentile of the recent latencies.
+     */
+    void record(long latencyNanos) {
+        if (percentile <= 0) {
+            return;
+        }
+
+        var sample = samples.getAndIncrement();
+        latencies.set((int) (sample % WINDOW), latencyNanos);
+
+        var recorded = sample + 1;
+
+        // first once the minimum is reached, then every RECOMPUTE_EVERY samples
+        if (recorded >= MIN_SAMPLES && 0 == (recorded - MIN_SAMPLES) % RECOMPUTE_EVERY) {
+            var count = (int) Math.min(WINDOW, recorded);
+            var window = new long[count];
+
+            for (int i = 0; i < count; i++) {
+                window[i] = latencies.get(i);
+            }
+
+            Arrays.sort(window);
+
+            delayNanos = window[(int) Math.min(count - 1, Math.ceil(count * percentile / 100) - 1)];
+        }
+    }
+
+    public static final class Builder {
+        private Duration delay = Duration.ofMillis(50);
+        private double percentile;
+        private double budget = 0.05;
+
+        private Builder() {
+            //no-op
+        }
+
+        /**
+         * @param delay the delay before a hedge is sent, or until enough latencies are known when a percentile is
+         *              set, 50 milliseconds by default
+         * @return the builder
+         */
+        public Builder delay(Duration delay) {
+            this.delay = delay;
+
+            return this;
+        }
+
+        /**
+         * @param percentile sends the hedge once the request takes longer than this percentile of the recent
+         *                   latencies, e.g. 95. Not set by default, the fixed delay is used
+         * @return the builder
+         */
+        public Builder percentile(double percentile) {
+            this.percentile = percentile;
+
+            return this;
+        }
+
+        /**
+         * @param budget the maximum number of hedges per request, 0.05 (5% extra requests) by default
+         * @return the builder
+         */
+        public Builder budget(double budget) {
+            this.budget = budget;
+
+            return this;
+        }
+
+        public HedgingPolicy build() {
+            validate();
+            return new HedgingPolicy(this);
+        }
+
+        private void validate() {
+            Objects.requireNonNull(delay, "Delay should not be null");
+
+            if (delay.isNegative()) {
+                throw new IllegalArgumentException("Delay should not be negative, got " + delay);
+            }
+
+            if (percentile < 0 || percentile >= 100) {
+                throw new IllegalArgumentException("Percentile should be between 0 and 100, got " + percentile);
+            }
+
+            if (budget < 0 || budget > 1) {
+                throw new IllegalArgumentException("Budget should be between 0 and 1, got " + budget);
+            }
+        }
+    }
+}
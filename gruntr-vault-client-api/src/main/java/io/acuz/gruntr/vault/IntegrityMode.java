@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+/**
+ * How the {@code gruntr__} header of an encrypted properties file is protected against tampering.
+ */
+public enum IntegrityMode {
+    /**
+     * The SHA3 digest of the header, encrypted with the transit key and stored in
+     * {@value VaultTransitRestClient#GRUNTR__SHA_3}. Validating it requires decrypting it.
+     */
+    SHA3,
+    /**
+     * A transit HMAC of the same digest, stored in {@value VaultTransitRestClient#GRUNTR__HMAC}. Validating it is a
+     * single {@code verify} call, Vault never returns key material.
+     */
+    HMAC
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import io.acuz.gruntr.vault.exception.VaultException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Gathers single values that are submitted concurrently into one batch request. The first value opens a window,
+ * the batch is sent when the window closes or as soon as it holds {@code maxBatchSize} values, whichever comes
+ * first. Every caller gets the output of its own value, or the error Vault reported for it.
+ * <p>
+ * A value is never delayed more than the window, on top of the request itself. Values whose caller gave up (cancelled
+ * its future) before the batch was sent are left out.
+ */
+final class MicroBatcher {
+    private final IntSupplier maxBatchSize;
+    private final Executor window;
+    private final Function<List<byte[]>, CompletableFuture<List<BatchItem>>> sender;
+    private List<Pending> pending = new ArrayList<>();
+
+    /**
+     * @param maxBatchSize the maximum number of values in one request, can change over time
+     * @param window       runs the flush once the window closes
+     * @param sender       sends the values, completes with an item per value, in order
+     */
+    MicroBatcher(IntSupplier maxBatchSize, Executor window, Function<List<byte[]>, CompletableFuture<List<BatchItem>>> sender) {
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+        this.sender = sender;
+    }
+
+    CompletableFuture<char[]> submit(byte[] value) {
+        var entry = new Pending(value);
+        List<Pending> full = null;
+        List<Pending> opened = null;
+
+        synchronized (this) {
+            pending.add(entry);
+
+            if (pending.size() >= maxBatchSize.getAsInt()) {
+                full = pending;
+                pending = new ArrayList<>();
+            } else if (1 == pending.size()) {
+                opened = pending;
+            }
+        }
+
+        if (null != full) {
+            send(full);
+        } else if (null != opened) {
+            var batch = opened;
+            window.execute(() -> flush(batch));
+        }
+
+        return entry.result;
+    }
+
+    /**
+     * Sends the batch when the window closes, unless it was already sent because it was full.
+     */
+    private void flush(List<Pending> batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                return;
+            }
+
+            pending = new ArrayList<>();
+        }
+
+        send(batch);
+    }
+
+    private void send(List<Pending> batch) {
+        var live = new ArrayList<Pending>(batch.size());
+
+        batch.forEach(entry -> {
+            if (!entry.result.isDone()) {
+                live.add(entry);
+            }
+        });
+
+        if (live.isEmpty()) {
+            return;
+        }
+
+        var values = new ArrayList<byte[]>(live.size());
+        live.forEach(entry -> values.add(entry.value));
+
+        CompletableFuture<List<BatchItem>> response;
+
+        try {
+            response = sender.apply(values);
+        } catch (RuntimeException e) {
+            live.forEach(entry -> entry.result.completeExceptionally(e));
+            return;
+        }
+
+        response.whenComplete((items, throwable) -> {
+            for (int i = 0; i < live.size(); i++) {
+                var result = live.get(i).result;
+
+                if (null != throwable) {
+                    result.completeExceptionally(throwable instanceof CompletionException && null != throwable.getCause()
+                            ? throwable.getCause()
+                            : throwable);
+                } else if (items.get(i).isFailure()) {
+                    result.completeExceptionally(new VaultException("Vault was unable to handle the value: " + items.get(i).getError()));
+                } else if (!result.complete(items.get(i).getValue())) {
+                    // the caller gave up in the meantime
+                    Arrays.fill(items.get(i).getValue(), '\0');
+                }
+            }
+        });
+    }
+
+    private static final class Pending {
+        private final byte[] value;
+        private final CompletableFuture<char[]> result = new CompletableFuture<>();
+
+        private Pending(byte[] value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When and how long to wait before sending a request to Vault again. Requests are retried on connection failures
+ * (refused, reset, connect timeout) and on the retryable status codes, 429, 500, 502 and 503 by default. Other I/O
+ * errors, e.g. a failed TLS handshake or an unknown host, are not retried. The values of a batch request that Vault
+ * rejected individually with a transient error are retried as a smaller batch, a value that is invalid is not.
+ * <p>
+ * The delay between attempts follows "decorrelated jitter": a random delay between the base delay and three times
+ * the previous delay, capped to the maximum delay, so that clients failing at the same time do not retry in lockstep.
+ * A {@code Retry-After} header sent by Vault raises the delay, up to the maximum delay.
+ * <p>
+ * Transit operations have no side effects besides creating a missing key, they are all retried. A request that timed
+ * out waiting for its response is not retried, Vault is already busy with it.
+ */
+public final class RetryPolicy {
+    private static final RetryPolicy NONE = builder().maxAttempts(1).build();
+    private static final List<String> TRANSIENT_ITEM_ERRORS = List.of(
+            "internal error", "timeout", "timed out", "deadline exceeded", "unavailable", "try again", "too many requests");
+
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final Set<Integer> retryableStatusCodes;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseDelayNanos = builder.baseDelay.toNanos();
+        this.maxDelayNanos = builder.maxDelay.toNanos();
+        this.retryableStatusCodes = Set.copyOf(builder.retryableStatusCodes);
+    }
+
+    /**
+     * @return the policy sending every request once, the default of a client
+     */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    boolean canRetry(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    boolean isRetryable(int statusCode) {
+        return retryableStatusCodes.contains(statusCode);
+    }
+
+    /**
+     * @return true if the request failed to connect, or its connection was reset or closed by Vault
+     */
+    static boolean isRetryable(Throwable throwable) {
+        var cause = throwable instanceof CompletionException && null != throwable.getCause()
+                ? throwable.getCause()
+                : throwable;
+
+        if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+            return true;
+        }
+
+        for (var current = cause; current instanceof IOException; current = current.getCause()) {
+            var message = current.getMessage();
+
+            if (current instanceof EOFException
+                    || (null != message && message.toLowerCase(Locale.ROOT).contains("connection reset"))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param error the error Vault reported for a single value of a batch request
+     * @return true if the error is transient, an invalid value (ciphertext, base64, key version) is not retried
+     */
+    static boolean isRetryable(String error) {
+        var message = error.toLowerCase(Locale.ROOT);
+
+        return TRANSIENT_ITEM_ERRORS.stream().anyMatch(message::contains);
+    }
+
+    /**
+     * @param previousDelayNanos the delay before the previous attempt, 0 before the first retry
+     * @param retryAfterNanos    the delay asked by Vault, 0 when it did not ask for one
+     * @return the delay before the next attempt
+     */
+    long nextDelayNanos(long previousDelayNanos, long retryAfterNanos) {
+        var upper = Math.min(maxDelayNanos, Math.max(baseDelayNanos, previousDelayNanos) * 3);
+        var delay = upper > baseDelayNanos ? ThreadLocalRandom.current().nextLong(baseDelayNanos, upper + 1) : baseDelayNanos;
+
+        return Math.max(delay, Math.min(retryAfterNanos, maxDelayNanos));
+    }
+
+    /**
+     * @param retryAfter the value of a {@code Retry-After} header, in seconds or as an HTTP date, can be null
+     * @return the delay it asks for, 0 when absent or invalid
+     */
+    static long retryAfterNanos(String retryAfter) {
+        if (null == retryAfter || retryAfter.isBlank()) {
+            return 0;
+        }
+
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                var until = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+
+                return Math.max(0, Duration.between(Instant.now(), until).toNanos());
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    public static final class Builder {
+        private int maxAttempts = 3;
+        private Duration baseDelay = Duration.ofMillis(100);
+        private Duration maxDelay = Duration.ofSeconds(2);
+        private Set<Integer> retryableStatusCodes = Set.of(429, 500, 502, 503);
+
+        private Builder() {
+            //no-op
+        }
+
+        /**
+         * @param maxAttempts the number of times a request is sent at most, the first attempt included, 3 by default
+         * @return the builder
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+
+            return this;
+        }
+
+        /**
+         * @param baseDelay the shortest delay between two attempts, 100 milliseconds by default
+         * @return the builder
+         */
+        public Builder baseDelay(Duration baseDelay) {
+            this.baseDelay = baseDelay;
+
+            return this;
+        }
+
+        /**
+         * @param maxDelay the longest delay between two attempts, {@code Retry-After} included, 2 seconds by default
+         * @return the builder
+         */
+        public Builder maxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+
+            return this;
+        }
+
+        /**
+         * @param retryableStatusCodes the status codes of the responses to retry, 429, 500, 502 and 503 by default
+         * @return the builder
+         */
+        public Builder retryableStatusCodes(Set<Integer> retryableStatusCodes) {
+            this.retryableStatusCodes = retryableStatusCodes;
+
+            return this;
+        }
+
+        public RetryPolicy build() {
+            validate();
+            return new RetryPolicy(this);
+        }
+
+        private void validate() {
+            Objects.requireNonNull(baseDelay, "Base delay should not be null");
+            Objects.requireNonNull(maxDelay, "Max delay should not be null");
+            Objects.requireNonNull(retryableStatusCodes, "Retryable status codes should not be null");
+
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Max attempts should be at least 1, got " + maxAttempts);
+            }
+
+            if (baseDelay.isNegative()) {
+                throw new IllegalArgumentException("Base delay should not be negative, got " + baseDelay);
+            }
+
+            if (maxDelay.compareTo(baseDelay) < 0) {
+                throw new IllegalArgumentException("Max delay should not be shorter than the base delay, got " + maxDelay);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent calls for the same key share one request. The first call sends the request, calls that arrive
+ * while it is in flight wait for its outcome, and the key is forgotten as soon as the request completes, so nothing
+ * is kept around afterwards.
+ * <p>
+ * Every caller gets its own copy of the result, as callers wipe their plaintext independently. The shared result is
+ * wiped once it is handed out. The request is cancelled when all of its callers cancelled.
+ */
+final class SingleFlight {
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    CompletableFuture<char[]> execute(String key, Supplier<CompletableFuture<char[]>> request) {
+        while (true) {
+            var flight = flights.computeIfAbsent(key, ignored -> new Flight());
+            var caller = flight.join();
+
+            if (null == caller) {
+                // completed in the meantime, start over
+                flights.remove(key, flight);
+                continue;
+            }
+
+            if (flight.start()) {
+                CompletableFuture<char[]> response;
+
+                try {
+                    response = request.get();
+                } catch (RuntimeException e) {
+                    response = CompletableFuture.failedFuture(e);
+                }
+
+                flight.attach(response);
+                response.whenComplete((value, throwable) -> {
+                    flights.remove(key, flight);
+                    flight.complete(value, throwable);
+                });
+            }
+
+            return caller;
+        }
+    }
+
+    int size() {
+        return flights.size();
+    }
+
+    private static final class Flight {
+        private final List<CompletableFuture<char[]>> callers = new ArrayList<>();
+        private CompletableFuture<char[]> response;
+        private boolean started;
+        private boolean done;
+        private int waiting;
+
+        /**
+         * @return the future of a new caller, or null when the flight is already over
+         */
+        private CompletableFuture<char[]> join() {
+            var caller = new CompletableFuture<char[]>();
+
+            synchronized (this) {
+                if (done) {
+                    return null;
+                }
+
+                callers.add(caller);
+                waiting++;
+            }
+
+            caller.whenComplete((value, throwable) -> {
+                if (caller.isCancelled()) {
+                    leave();
+                }
+            });
+
+            return caller;
+        }
+
+        /**
+         * @return true for the caller that should send the request
+         */
+        private synchronized boolean start() {
+            var first = !started;
+            started = true;
+
+            return first;
+        }
+
+        private void attach(CompletableFuture<char[]> response) {
+            boolean cancel;
+
+            synchronized (this) {
+                this.response = response;
+                cancel = done;
+            }
+
+            if (cancel) {
+                response.cancel(true);
+            }
+        }
+
+        private void leave() {
+            CompletableFuture<char[]> cancel = null;
+
+            synchronized (this) {
+                if (--waiting == 0 && !done) {
+                    // nobody is interested anymore
+                    done = true;
+                    cancel = response;
+                }
+            }
+
+            if (null != cancel) {
+                cancel.cancel(true);
+            }
+        }
+
+        private void complete(char[] value, Throwable throwable) {
+            List<CompletableFuture<char[]>> waiters;
+
+            synchronized (this) {
+                done = true;
+                waiters = new ArrayList<>(callers);
+            }
+
+            var cause = throwable instanceof CompletionException && null != throwable.getCause()
+                    ? throwable.getCause()
+                    : throwable;
+
+            for (var caller : waiters) {
+                if (null != cause) {
+                    caller.completeExceptionally(cause);
+                } else {
+                    var copy = value.clone();
+
+                    if (!caller.complete(copy)) {
+                        Arrays.fill(copy, '\0');
+                    }
+                }
+            }
+
+            if (null != value) {
+                Arrays.fill(value, '\0');
+            }
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.acuz.gruntr.util.ArrayUtils;
+import io.acuz.gruntr.vault.exception.VaultException;
+import io.acuz.gruntr.vault.model.VaultTransitKey;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming reader and writer of the transit request and response bodies. Plaintext is written as base64 straight
+ * from its bytes and decoded straight from the response, without going through intermediate {@link String}s or a
+ * JSON tree. Request bodies are collected in a buffer that is zeroed once the body has been copied out of it; the
+ * generator's own small write buffer belongs to Jackson and is not wiped.
+ */
+final class TransitJsonCodec {
+    private static final String JSON_DATA_FIELD = "data";
+    private static final String BITS_FIELD = "bits";
+    private static final String PLAINTEXT_FIELD = "plaintext";
+    private static final String LATEST_VERSION_FIELD = "latest_version";
+    private static final String MIN_DECRYPTION_VERSION_FIELD = "min_decryption_version";
+    private static final String UNEXPECTED_BODY_STRUCTURE = "Vault returned unexpected body structure";
+    // quotes, colons, commas and braces around a field
+    private static final int JSON_OVERHEAD = 8;
+    private static final int MIN_CAPACITY = 64;
+
+    private final JsonFactory factory;
+
+    TransitJsonCodec(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return {@code {"<input>": "<value>"}}
+     */
+    byte[] writeRequest(VaultTransitEndpoint endpoint, byte[] value) throws IOException {
+        return write(expectedSize(endpoint, value), generator -> writeInput(generator, endpoint, value));
+    }
+
+    /**
+     * @return {@code {"batch_input": [{"<input>": "<value>"}, ...]}}
+     */
+    byte[] writeBatchRequest(VaultTransitEndpoint endpoint, List<byte[]> values) throws IOException {
+        var expectedSize = endpoint.getBatchInputFieldName().length() + JSON_OVERHEAD;
+
+        for (byte[] value : values) {
+            expectedSize += expectedSize(endpoint, value);
+        }
+
+        return write(expectedSize, generator -> {
+            generator.writeArrayFieldStart(endpoint.getBatchInputFieldName());
+
+            for (byte[] value : values) {
+                generator.writeStartObject();
+                writeInput(generator, endpoint, value);
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+        });
+    }
+
+    /**
+     * @return {@code {"bits": <bits>}}
+     */
+    byte[] writeDataKeyRequest(int bits) throws IOException {
+        return write(MIN_CAPACITY, generator -> generator.writeNumberField(BITS_FIELD, bits));
+    }
+
+    /**
+     * @return {@code {"input": "<base64 input>", "hmac": "<hmac>"}}
+     */
+    byte[] writeVerifyRequest(byte[] input, char[] hmac) throws IOException {
+        return write(expectedSize(VaultTransitEndpoint.VERIFY, input) + hmac.length + JSON_OVERHEAD, generator -> {
+            writeInput(generator, VaultTransitEndpoint.VERIFY, input);
+            generator.writeFieldName(VaultTransitEndpoint.HMAC.getOutputFieldName());
+            generator.writeString(hmac, 0, hmac.length);
+        });
+    }
+
+    /**
+     * Reads {@code data.valid} from the response of a verify request.
+     *
+     * @throws VaultException when the outcome is missing
+     */
+    boolean readVerifyResponse(byte[] body) throws IOException, VaultException {
+        try (var parser = openData(body)) {
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                var name = parser.getCurrentName();
+                var token = parser.nextToken();
+
+                if (VaultTransitEndpoint.VERIFY.getOutputFieldName().equals(name) && token.isBoolean()) {
+                    return parser.getBooleanValue();
+                }
+
+                parser.skipChildren();
+            }
+        }
+
+        throw new VaultException(UNEXPECTED_BODY_STRUCTURE);
+    }
+
+    /**
+     * Reads {@code data.<output>} from the response of a single value request.
+     *
+     * @throws VaultException when the output value is missing
+     */
+    char[] readResponse(VaultTransitEndpoint endpoint, byte[] body) throws IOException, VaultException {
+        try (var parser = openData(body)) {
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                var name = parser.getCurrentName();
+                var token = parser.nextToken();
+
+                if (endpoint.getOutputFieldName().equals(name) && JsonToken.VALUE_STRING == token) {
+                    return readValue(parser, endpoint.hasBinaryOutput());
+                }
+
+                parser.skipChildren();
+            }
+        }
+
+        throw new VaultException(UNEXPECTED_BODY_STRUCTURE);
+    }
+
+    /**
+     * Reads {@code data.batch_results} from the response of a batch request.
+     *
+     * @throws VaultException when the results are missing or don't match the number of values sent
+     */
+    List<BatchItem> readBatchResponse(VaultTransitEndpoint endpoint, byte[] body, int expectedSize) throws IOException, VaultException {
+        try (var parser = openData(body)) {
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                var name = parser.getCurrentName();
+                var token = parser.nextToken();
+
+                if (endpoint.getBatchOutputFieldName().equals(name) && JsonToken.START_ARRAY == token) {
+                    var items = new ArrayList<BatchItem>(expectedSize);
+
+                    while (JsonToken.START_OBJECT == parser.nextToken()) {
+                        items.add(readBatchItem(parser, endpoint));
+                    }
+
+                    if (items.size() != expectedSize) {
+                        throw new VaultException(UNEXPECTED_BODY_STRUCTURE);
+                    }
+
+                    return items;
+                }
+
+                parser.skipChildren();
+            }
+        }
+
+        throw new VaultException(UNEXPECTED_BODY_STRUCTURE);
+    }
+
+    /**
+     * Reads {@code data.plaintext} (the data key) and {@code data.ciphertext} (the wrapped data key).
+     *
+     * @throws VaultException when one of them is missing
+     */
+    DataKey readDataKey(byte[] body) throws IOException, VaultException {
+        byte[] plaintext = null;
+        char[] ciphertext = null;
+
+        try (var parser = openData(body)) {
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                var name = parser.getCurrentName();
+                var token = parser.nextToken();
+
+                if (JsonToken.VALUE_STRING == token && PLAINTEXT_FIELD.equals(name)) {
+                    plaintext = parser.getBinaryValue();
+                } else if (JsonToken.VALUE_STRING == token && VaultTransitEndpoint.DATAKEY.getOutputFieldName().equals(name)) {
+                    ciphertext = readValue(parser, false);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        if (null == plaintext || null == ciphertext) {
+            if (null != plaintext) {
+                Arrays.fill(plaintext, (byte) 0);
+            }
+
+            throw new VaultException(UNEXPECTED_BODY_STRUCTURE);
+        }
+
+        return new DataKey(plaintext, ciphertext);
+    }
+
+    /**
+     * Reads {@code data.latest_version} and {@code data.min_decryption_version} from the key metadata, skipping the
+     * rest of it (e.g. the creation times of every key version).
+     *
+     * @throws VaultException when one of the versions is missing
+     */
+    VaultTransitKey readKey(byte[] body) throws IOException, VaultException {
+        var latestVersion = -1;
+        var minDecryptionVersion = -1;
+
+        try (var parser = openData(body)) {
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                var name = parser.getCurrentName();
+                var token = parser.nextToken();
+
+                if (JsonToken.VALUE_NUMBER_INT == token && LATEST_VERSION_FIELD.equals(name)) {
+                    latestVersion = parser.getIntValue();
+                } else if (JsonToken.VALUE_NUMBER_INT == token && MIN_DECRYPTION_VERSION_FIELD.equals(name)) {
+                    minDecryptionVersion = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        try {
+            return VaultTransitKey.of(latestVersion, minDecryptionVersion);
+        } catch (IllegalArgumentException e) {
+            throw new VaultException(UNEXPECTED_BODY_STRUCTURE, e);
+        }
+    }
+
+    private BatchItem readBatchItem(JsonParser parser, VaultTransitEndpoint endpoint) throws IOException {
+        char[] value = null;
+        String error = null;
+
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            var name = parser.getCurrentName();
+            var token = parser.nextToken();
+
+            if (JsonToken.VALUE_STRING == token && endpoint.getOutputFieldName().equals(name)) {
+                value = readValue(parser, endpoint.hasBinaryOutput());
+            } else if (JsonToken.VALUE_STRING == token && endpoint.getBatchErrorFieldName().equals(name)) {
+                error = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (null != error && !error.isEmpty()) {
+            return BatchItem.failure(error);
+        }
+
+        return null == value
+                ? BatchItem.failure("missing " + endpoint.getOutputFieldName())
+                : BatchItem.success(value);
+    }
+
+    /**
+     * Opens a parser on the response body, positioned inside the {@code data} object.
+     */
+    private JsonParser openData(byte[] body) throws IOException, VaultException {
+        var parser = factory.createParser(body);
+
+        if (JsonToken.START_OBJECT == parser.nextToken()) {
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                var name = parser.getCurrentName();
+                var token = parser.nextToken();
+
+                if (JSON_DATA_FIELD.equals(name) && JsonToken.START_OBJECT == token) {
+                    return parser;
+                }
+
+                parser.skipChildren();
+            }
+        }
+
+        parser.close();
+
+        throw new VaultException(UNEXPECTED_BODY_STRUCTURE);
+    }
+
+    private static char[] readValue(JsonParser parser, boolean binary) throws IOException {
+        if (binary) {
+            var bytes = parser.getBinaryValue();
+            var chars = ArrayUtils.toCharArray(bytes);
+            Arrays.fill(bytes, (byte) 0);
+
+            return chars;
+        }
+
+        var offset = parser.getTextOffset();
+
+        return Arrays.copyOfRange(parser.getTextCharacters(), offset, offset + parser.getTextLength());
+    }
+
+    private static void writeInput(JsonGenerator generator, VaultTransitEndpoint endpoint, byte[] value) throws IOException {
+        generator.writeFieldName(endpoint.getInputFieldName());
+
+        if (endpoint.hasBinaryInput()) {
+            generator.writeBinary(value);
+        } else {
+            generator.writeUTF8String(value, 0, value.length);
+        }
+    }
+
+    /**
+     * The size of {@code {"<input>": "<value>"}}, unless the value has characters that need escaping.
+     */
+    private static int expectedSize(VaultTransitEndpoint endpoint, byte[] value) {
+        var encoded = endpoint.hasBinaryInput() ? (value.length + 2) / 3 * 4 : value.length;
+
+        return endpoint.getInputFieldName().length() + encoded + JSON_OVERHEAD;
+    }
+
+    /**
+     * @param expectedSize the size of the body, the buffer is allocated once when it is right
+     */
+    private byte[] write(int expectedSize, BodyWriter writer) throws IOException {
+        var output = new WipingOutputStream(Math.max(MIN_CAPACITY, expectedSize));
+
+        try (var generator = factory.createGenerator(output)) {
+            generator.writeStartObject();
+            writer.write(generator);
+            generator.writeEndObject();
+        }
+
+        try {
+            return output.toByteArray();
+        } finally {
+            output.wipe();
+        }
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} that zeroes the buffers it outgrows, and its last buffer on {@link #wipe()}.
+     */
+    private static final class WipingOutputStream extends ByteArrayOutputStream {
+        WipingOutputStream(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            ensureCapacity(count + 1);
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            super.write(b, off, len);
+        }
+
+        synchronized void wipe() {
+            Arrays.fill(buf, (byte) 0);
+            count = 0;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= buf.length) {
+                return;
+            }
+
+            var grown = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+            Arrays.fill(buf, (byte) 0);
+            buf = grown;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+}
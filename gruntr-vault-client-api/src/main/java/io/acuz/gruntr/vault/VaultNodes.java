@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The Vault nodes that can serve read-side requests, e.g. performance standbys. A request goes to the better of two
+ * randomly picked nodes ("power of two choices"), scored by their latency (an exponentially weighted moving average)
+ * times their number of requests in flight, so slow or busy nodes get less traffic without all clients piling onto
+ * the same node.
+ * <p>
+ * Nodes are health checked passively: a failure counts as a slow response, and a node failing
+ * {@value #FAILURE_THRESHOLD} times in a row is ejected for a while. When all nodes are ejected, the one ejected
+ * first is used.
+ */
+final class VaultNodes {
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final double ALPHA = 0.3;
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final List<Node> nodes;
+    private final long ejectionNanos;
+    private final LongSupplier clock;
+
+    VaultNodes(List<URL> hosts, long ejectionNanos, LongSupplier clock) {
+        var list = new ArrayList<Node>(hosts.size());
+        var now = clock.getAsLong();
+        hosts.forEach(host -> list.add(new Node(host, now)));
+
+        this.nodes = List.copyOf(list);
+        this.ejectionNanos = ejectionNanos;
+        this.clock = clock;
+    }
+
+    Node select() {
+        if (1 == nodes.size()) {
+            return nodes.get(0);
+        }
+
+        var now = clock.getAsLong();
+        var random = ThreadLocalRandom.current();
+        var first = nodes.get(random.nextInt(nodes.size()));
+        var second = nodes.get(random.nextInt(nodes.size() - 1));
+        second = second == first ? nodes.get(nodes.size() - 1) : second;
+
+        if (first.isEjected(now) || second.isEjected(now)) {
+            if (!first.isEjected(now)) {
+                return first;
+            }
+
+            if (!second.isEjected(now)) {
+                return second;
+            }
+
+            return fallback(now);
+        }
+
+        return first.score() <= second.score() ? first : second;
+    }
+
+    private Node fallback(long now) {
+        Node selected = null;
+
+        for (Node node : nodes) {
+            if (!node.isEjected(now)) {
+                return node;
+            }
+
+            if (null == selected || node.ejectedUntil - selected.ejectedUntil < 0) {
+                selected = node;
+            }
+        }
+
+        return selected;
+    }
+
+    List<Node> getNodes() {
+        return nodes;
+    }
+
+    void onStart(Node node) {
+        node.inFlight.incrementAndGet();
+    }
+
+    void onSuccess(Node node, long latencyNanos) {
+        node.inFlight.decrementAndGet();
+        node.consecutiveFailures.set(0);
+        node.observe(latencyNanos);
+    }
+
+    void onFailure(Node node, long latencyNanos) {
+        node.inFlight.decrementAndGet();
+        node.observe(Math.max(FAILURE_PENALTY_NANOS, Math.max(latencyNanos, node.latency.get() * 2)));
+
+        if (node.consecutiveFailures.incrementAndGet() >= FAILURE_THRESHOLD) {
+            node.ejectedUntil = clock.getAsLong() + ejectionNanos;
+        }
+    }
+
+    /**
+     * The request was cancelled, it says nothing about the health of the node.
+     */
+    void onCancel(Node node) {
+        node.inFlight.decrementAndGet();
+    }
+
+    static final class Node {
+        private final URL url;
+        private final AtomicLong latency = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        /**
+         * Compared by difference, like {@link System#nanoTime()} values, the clock can overflow.
+         */
+        private volatile long ejectedUntil;
+
+        private Node(URL url, long now) {
+            this.url = url;
+            this.ejectedUntil = now;
+        }
+
+        URL getUrl() {
+            return url;
+        }
+
+        boolean isEjected(long now) {
+            return now - ejectedUntil < 0;
+        }
+
+        /**
+         * @return the expected time of a new request, nodes without latency yet score 0 so they get tried
+         */
+        private double score() {
+            return (double) latency.get() * (inFlight.get() + 1);
+        }
+
+        private void observe(long latencyNanos) {
+            latency.getAndUpdate(current -> 0 == current
+                    ? Math.max(1, latencyNanos)
+                    : Math.max(1, Math.round(current + ALPHA * (latencyNanos - current))));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event of a properties operation, spanning all the requests it needs. Neither the property keys
+ * nor the values are recorded.
+ */
+@Name("io.acuz.gruntr.VaultProperties")
+@Label("Vault Properties")
+@Category({"Gruntr", "Vault"})
+@Description("Decryption, encryption, rewrapping or validation of a properties file")
+@StackTrace(false)
+final class VaultPropertiesEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Transit Path")
+    String transitPath;
+
+    @Label("Key Name")
+    String keyName;
+
+    @Label("Properties")
+    @Description("Number of properties, the gruntr__ header included")
+    int properties;
+
+    @Label("Failure")
+    String failure;
+}
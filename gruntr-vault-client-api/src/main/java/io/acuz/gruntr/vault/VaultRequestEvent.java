@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event of a request to the transit engine. Values are never recorded, only their number and
+ * size. The JDK HTTP client does not expose connection setup separately, so {@link #waiting} covers getting a
+ * connection, sending the request and Vault handling it, up to the response headers.
+ */
+@Name("io.acuz.gruntr.VaultRequest")
+@Label("Vault Request")
+@Category({"Gruntr", "Vault"})
+@Description("A request to the Vault transit engine")
+@StackTrace(false)
+final class VaultRequestEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Host")
+    String host;
+
+    @Label("Transit Path")
+    String transitPath;
+
+    @Label("Key Name")
+    String keyName;
+
+    @Label("Batch Size")
+    int batchSize;
+
+    @Label("Status Code")
+    @Description("HTTP status code of the response, 0 when there was none")
+    int statusCode;
+
+    @Label("Retries")
+    @Description("Number of times the request was sent again, after a transient failure or over HTTP/1.1 after HTTP/2 failed")
+    int retries;
+
+    @Label("Bytes Out")
+    @DataAmount
+    long bytesOut;
+
+    @Label("Bytes In")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Waiting")
+    @Description("Time until the response headers were received")
+    @Timespan
+    long waiting;
+
+    @Label("Receiving")
+    @Description("Time to receive the response body")
+    @Timespan
+    long receiving;
+
+    @Label("Parsing")
+    @Description("Time to parse the response body")
+    @Timespan
+    long parsing;
+
+    @Label("Failure")
+    String failure;
+
+    // not recorded, the timestamp the receiving phase is computed from
+    transient long headersAt;
+}
@@ -21,18 +21,40 @@ import java.net.URL;
 
 
 enum VaultTransitEndpoint {
-    DECRYPT("decrypt", "ciphertext", "plaintext"),
-    ENCRYPT("encrypt", "plaintext", "ciphertext"),
-    REWRAP("rewrap", "ciphertext", "ciphertext");
+    DECRYPT("decrypt", "ciphertext", "plaintext", false, true),
+    ENCRYPT("encrypt", "plaintext", "ciphertext", true, false),
+    REWRAP("rewrap", "ciphertext", "ciphertext", false, false),
+    /**
+     * Read-only endpoint of the key metadata, it has no input nor output value, see {@link TransitJsonCodec#readKey(byte[])}.
+     */
+    KEYS("keys", null, null, false, false),
+    /**
+     * Generates a data key, returned both as plaintext and wrapped by the transit key, see
+     * {@link TransitJsonCodec#readDataKey(byte[])}.
+     */
+    DATAKEY("datakey/plaintext", null, "ciphertext", false, false),
+    HMAC("hmac", "input", "hmac", true, false),
+    /**
+     * Verifies an HMAC, see {@link TransitJsonCodec#writeVerifyRequest(byte[], char[])}.
+     */
+    VERIFY("verify", "input", "valid", true, false);
+
+    private static final String BATCH_INPUT_FIELD_NAME = "batch_input";
+    private static final String BATCH_OUTPUT_FIELD_NAME = "batch_results";
+    private static final String BATCH_ERROR_FIELD_NAME = "error";
 
     private final String action;
     private final String inputFieldName;
     private final String outputFieldName;
+    private final boolean binaryInput;
+    private final boolean binaryOutput;
 
-    VaultTransitEndpoint(String action, String inputFieldName, String outputFieldName) {
+    VaultTransitEndpoint(String action, String inputFieldName, String outputFieldName, boolean binaryInput, boolean binaryOutput) {
         this.action = action;
         this.inputFieldName = inputFieldName;
         this.outputFieldName = outputFieldName;
+        this.binaryInput = binaryInput;
+        this.binaryOutput = binaryOutput;
     }
 
     public URI from(URL host, String mountPath, String keyName) {
@@ -46,6 +68,13 @@ enum VaultTransitEndpoint {
         );
     }
 
+    /**
+     * @return the transit action, the path segment following the mount path, e.g. {@code datakey/plaintext}
+     */
+    public String getAction() {
+        return action;
+    }
+
     public String getInputFieldName() {
         return inputFieldName;
     }
@@ -53,4 +82,42 @@ enum VaultTransitEndpoint {
     public String getOutputFieldName() {
         return outputFieldName;
     }
+
+    /**
+     * @return true if the input value is sent as base64 encoded binary data (plaintext), false if it is sent as is
+     * (ciphertext)
+     */
+    public boolean hasBinaryInput() {
+        return binaryInput;
+    }
+
+    /**
+     * @return true if the output value is returned as base64 encoded binary data (plaintext), false if it is
+     * returned as is (ciphertext)
+     */
+    public boolean hasBinaryOutput() {
+        return binaryOutput;
+    }
+
+    /**
+     * @return the name of the array holding the items of a batch request, each item is an object containing
+     * the {@link #getInputFieldName() input field}
+     */
+    public String getBatchInputFieldName() {
+        return BATCH_INPUT_FIELD_NAME;
+    }
+
+    /**
+     * @return the name of the array holding the results of a batch request, in the same order as the input
+     */
+    public String getBatchOutputFieldName() {
+        return BATCH_OUTPUT_FIELD_NAME;
+    }
+
+    /**
+     * @return the name of the field Vault uses to report that a single item of a batch failed
+     */
+    public String getBatchErrorFieldName() {
+        return BATCH_ERROR_FIELD_NAME;
+    }
 }
@@ -18,17 +18,26 @@ package io.acuz.gruntr.vault;
 
 import io.acuz.gruntr.util.VaultValidationUtil;
 import io.acuz.gruntr.vault.exception.VaultException;
+import io.acuz.gruntr.vault.metrics.VaultMetricsListener;
 import io.acuz.gruntr.vault.model.VaultToken;
 
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-public interface VaultTransitRestClient {
+public interface VaultTransitRestClient extends AutoCloseable {
     String GRUNTR__VAULT_TRANSIT_KEY = "gruntr__vault_transit_key";
     String GRUNTR__VAULT_HOST = "gruntr__vault_host";
     String GRUNTR__VAULT_TRANSIT_PATH = "gruntr__vault_transit_path";
     String GRUNTR__SHA_3 = "gruntr__sha3";
+    String GRUNTR__DATA_KEY = "gruntr__data_key";
+    String GRUNTR__HMAC = "gruntr__hmac";
+    String GRUNTR__VALUE_HMAC_PREFIX = "gruntr__value_hmac.";
 
     static VaultTransitRestClientImpl.Builder builder() {
         return new Builder();
@@ -36,6 +45,10 @@ public interface VaultTransitRestClient {
 
     char[] encrypt(byte[] value) throws VaultException;
 
+    /**
+     * Decrypts a single ciphertext. Concurrent calls for the same ciphertext share one request to Vault, each of them
+     * gets its own copy of the plaintext.
+     */
     char[] decrypt(char[] value) throws VaultException;
 
     char[] rewrap(char[] value) throws VaultException;
@@ -44,13 +57,86 @@ public interface VaultTransitRestClient {
 
     Properties encrypt(Properties properties) throws VaultException;
 
+    /**
+     * Encrypts the properties incrementally: a value that did not change since the previous encrypted output keeps
+     * its ciphertext from that output, only new and changed values are sent to Vault. Changes are detected with a
+     * transit HMAC of every encrypted value (bound to its property key), stored in the
+     * {@value #GRUNTR__VALUE_HMAC_PREFIX}&lt;key&gt; headers. Encrypting an unchanged file takes one batch of HMAC
+     * requests.
+     *
+     * @param properties the plaintext properties
+     * @param previous   the previous encrypted output of these properties, can be empty
+     */
+    Properties encrypt(Properties properties, Properties previous) throws VaultException;
+
     Properties rewrap(Properties properties) throws VaultException;
 
+    /**
+     * Validates the {@code gruntr__} header of an encrypted properties file, i.e. that the Vault host, transit path
+     * and key it names were not tampered with. The Properties operations perform this check themselves, this method
+     * is meant for callers that decrypt the values of a file one by one.
+     *
+     * @param properties the encrypted properties
+     * @throws VaultException        when Vault could not be reached
+     * @throws NullPointerException  when one of the {@code gruntr__} values is missing
+     * @throws IllegalStateException when the header does not match its hash
+     */
+    void validate(Properties properties) throws VaultException;
+
+    /*
+     * Non-blocking counterparts of the methods above. The returned futures complete exceptionally with a
+     * VaultException (or the same runtime exceptions as their blocking counterparts). Cancelling a future aborts the
+     * HTTP exchange that is in flight for it, for decryptAsync(char[]) once all calls sharing the request cancelled.
+     */
+
+    CompletableFuture<char[]> encryptAsync(byte[] value);
+
+    CompletableFuture<char[]> decryptAsync(char[] value);
+
+    CompletableFuture<char[]> rewrapAsync(char[] value);
+
+    CompletableFuture<Properties> decryptAsync(Properties properties);
+
+    CompletableFuture<Properties> encryptAsync(Properties properties);
+
+    CompletableFuture<Properties> encryptAsync(Properties properties, Properties previous);
+
+    CompletableFuture<Properties> rewrapAsync(Properties properties);
+
+    CompletableFuture<Void> validateAsync(Properties properties);
+
+    /**
+     * Releases the transport of this client. Requests that are still in flight, and requests issued after closing
+     * the client, fail with a {@link VaultException}.
+     */
+    @Override
+    void close();
+
     final class Builder {
         URL host;
         VaultToken token;
         String transitPath;
         String transitKeyName;
+        int batchSize = 1;
+        int parallelism = 1;
+        Executor executor;
+        Duration connectTimeout;
+        Duration requestTimeout;
+        HttpClient.Version httpVersion = HttpClient.Version.HTTP_1_1;
+        DecryptionCache decryptionCache;
+        boolean rewrapOnlyStale;
+        boolean envelopeEncryption;
+        IntegrityMode integrityMode = IntegrityMode.SHA3;
+        boolean validateConcurrently;
+        VaultMetricsListener metricsListener = VaultMetricsListener.NOOP;
+        RetryPolicy retryPolicy = RetryPolicy.none();
+        CircuitBreaker circuitBreaker;
+        HedgingPolicy hedgingPolicy;
+        List<URL> readHosts = List.of();
+        ConcurrencyLimiter concurrencyLimiter;
+        Duration microBatchWindow;
+        int microBatchSize = 100;
+        boolean deduplicateValues;
 
         public VaultTransitRestClient build() {
             validate();
@@ -59,10 +145,39 @@ public interface VaultTransitRestClient {
 
         private void validate() {
             Objects.requireNonNull(token, "Vault token should not be null");
+            Objects.requireNonNull(httpVersion, "HTTP version should not be null");
+            Objects.requireNonNull(integrityMode, "Integrity mode should not be null");
+            Objects.requireNonNull(metricsListener, "Metrics listener should not be null");
+            Objects.requireNonNull(retryPolicy, "Retry policy should not be null");
 
             VaultValidationUtil.checkVaultHost(host.toExternalForm());
+            readHosts.forEach(readHost -> VaultValidationUtil.checkVaultHost(readHost.toExternalForm()));
             VaultValidationUtil.checkVaultPathComponent(transitPath);
             VaultValidationUtil.checkVaultPathComponent(transitKeyName);
+
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size should be at least 1, got " + batchSize);
+            }
+
+            if (null != microBatchWindow && (microBatchWindow.isNegative() || microBatchWindow.isZero())) {
+                throw new IllegalArgumentException("Micro batch window should be positive, got " + microBatchWindow);
+            }
+
+            if (microBatchSize < 1) {
+                throw new IllegalArgumentException("Micro batch size should be at least 1, got " + microBatchSize);
+            }
+
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism should be at least 1, got " + parallelism);
+            }
+
+            if (null != connectTimeout && (connectTimeout.isNegative() || connectTimeout.isZero())) {
+                throw new IllegalArgumentException("Connect timeout should be positive, got " + connectTimeout);
+            }
+
+            if (null != requestTimeout && (requestTimeout.isNegative() || requestTimeout.isZero())) {
+                throw new IllegalArgumentException("Request timeout should be positive, got " + requestTimeout);
+            }
         }
 
         public VaultTransitRestClientImpl.Builder host(URL hcServer) {
@@ -85,5 +200,274 @@ public interface VaultTransitRestClient {
 
             return this;
         }
+
+        /**
+         * Sets the maximum number of values sent to Vault in a single transit request when processing
+         * {@link Properties}. A value of 1 (the default) sends one request per property, anything higher
+         * uses the transit {@code batch_input} format.
+         *
+         * @param maxBatchSize the maximum number of values per request
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder batchSize(int maxBatchSize) {
+            this.batchSize = maxBatchSize;
+
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of requests (single values or batches) that are in flight at the same time when
+         * processing {@link Properties}. A value of 1 (the default) processes the values one request after the
+         * other. The first request that fails cancels the ones still in flight.
+         *
+         * @param maxConcurrentRequests the maximum number of concurrent requests
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder parallelism(int maxConcurrentRequests) {
+            this.parallelism = maxConcurrentRequests;
+
+            return this;
+        }
+
+        /**
+         * Sets the executor used by the underlying HTTP client. When no executor is provided, the client creates
+         * its own pool of daemon threads which is shut down on {@link VaultTransitRestClient#close()}. A provided
+         * executor is never shut down by the client.
+         *
+         * @param executor the executor for the HTTP client
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder executor(Executor executor) {
+            this.executor = executor;
+
+            return this;
+        }
+
+        /**
+         * @param timeout the maximum time to wait for a connection to Vault to be established
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder connectTimeout(Duration timeout) {
+            this.connectTimeout = timeout;
+
+            return this;
+        }
+
+        /**
+         * @param timeout the maximum time to wait for Vault to respond to a single request, after which the request
+         *                is aborted and fails with a {@link VaultException}
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder requestTimeout(Duration timeout) {
+            this.requestTimeout = timeout;
+
+            return this;
+        }
+
+        /**
+         * Sets the HTTP version used to talk to Vault, {@link HttpClient.Version#HTTP_1_1} by default. With
+         * {@link HttpClient.Version#HTTP_2}, concurrent requests to an https Vault host are multiplexed over a single
+         * connection. When HTTP/2 is not negotiated or its connection fails, the client falls back to HTTP/1.1.
+         *
+         * @param version the preferred HTTP version
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder httpVersion(HttpClient.Version version) {
+            this.httpVersion = version;
+
+            return this;
+        }
+
+        /**
+         * Sets a cache for decrypted values. Ciphertexts found in the cache are not sent to Vault, which makes
+         * repeated decryption of the same values free until they expire. No cache is used by default.
+         *
+         * @param cache the cache to use, can be shared between clients
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder decryptionCache(DecryptionCache cache) {
+            this.decryptionCache = cache;
+
+            return this;
+        }
+
+        /**
+         * When rewrapping properties, reads the version metadata of the transit key first and only sends the values
+         * that are not encrypted with its latest version to Vault. The other values are kept as they are. When the
+         * token is not allowed to read {@code <transit path>/keys/<key name>}, all values are rewrapped. Disabled by
+         * default.
+         *
+         * @param rewrapOnlyStale true to skip the values that are already current
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder rewrapOnlyStale(boolean rewrapOnlyStale) {
+            this.rewrapOnlyStale = rewrapOnlyStale;
+
+            return this;
+        }
+
+        /**
+         * Encrypts properties locally (AES-GCM) with a single data key of the transit engine, instead of sending
+         * every value to Vault. The data key, wrapped by the transit key, is stored in the
+         * {@value VaultTransitRestClient#GRUNTR__DATA_KEY} header and unwrapped with a single call when decrypting.
+         * Decryption handles these values regardless of this setting. Disabled by default.
+         *
+         * @param envelopeEncryption true to encrypt properties with a data key
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder envelopeEncryption(boolean envelopeEncryption) {
+            this.envelopeEncryption = envelopeEncryption;
+
+            return this;
+        }
+
+        /**
+         * Sets how encrypted properties protect their {@code gruntr__} header, {@link IntegrityMode#SHA3} by
+         * default. Validation follows the header that is present in the properties, regardless of this setting.
+         *
+         * @param integrityMode the integrity mode used when encrypting properties
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder integrityMode(IntegrityMode integrityMode) {
+            this.integrityMode = integrityMode;
+
+            return this;
+        }
+
+        /**
+         * When decrypting properties, sends the values to Vault while the {@code gruntr__} header is being validated
+         * instead of after it, saving a round trip. The decrypted values are only returned once the header is valid,
+         * otherwise they are wiped. Disabled by default, in which case no value is sent before the header is valid.
+         *
+         * @param validateConcurrently true to validate the header and decrypt the values at the same time
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder validateConcurrently(boolean validateConcurrently) {
+            this.validateConcurrently = validateConcurrently;
+
+            return this;
+        }
+
+        /**
+         * Reports every request sent to Vault (operation, batch size, bytes, status code and latency) to the
+         * listener, e.g. {@link io.acuz.gruntr.vault.metrics.JmxVaultMetrics}. {@link VaultMetricsListener#NOOP} by
+         * default.
+         *
+         * @param metricsListener the listener, can be shared between clients
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder metricsListener(VaultMetricsListener metricsListener) {
+            this.metricsListener = metricsListener;
+
+            return this;
+        }
+
+        /**
+         * Sends requests again when Vault could not be reached or answered with a retryable status code, and the
+         * values of a batch that Vault rejected individually. {@link RetryPolicy#none()} by default.
+         *
+         * @param retryPolicy the retry policy
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+
+            return this;
+        }
+
+        /**
+         * Fails requests immediately while Vault is considered down, see {@link CircuitBreaker}. Disabled by default.
+         *
+         * @param circuitBreaker the circuit breaker, can be shared between clients of the same Vault
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+
+            return this;
+        }
+
+        /**
+         * Sends a duplicate of a decrypt request that is slow to answer and uses the first response, see
+         * {@link HedgingPolicy}. Disabled by default.
+         *
+         * @param hedgingPolicy the hedging policy, can be shared between clients of the same Vault
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+
+            return this;
+        }
+
+        /**
+         * Additional Vault nodes, e.g. performance standbys, that serve the read-only requests (decrypt, verify and
+         * reading the key) next to the {@link #host(URL) host}. Each request goes to the node that is expected to
+         * answer first, nodes that keep failing are skipped for a while. Encrypt, rewrap and every other request
+         * always go to the host, which is also the host recorded in the properties for the integrity check.
+         *
+         * @param readHosts the additional nodes, without the host itself
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder readHosts(List<URL> readHosts) {
+            this.readHosts = List.copyOf(Objects.requireNonNull(readHosts, "Read hosts should not be null"));
+
+            return this;
+        }
+
+        /**
+         * Adapts the number of requests in flight and the batch size to what Vault sustains, see
+         * {@link ConcurrencyLimiter}. When set, the batch size of the limiter replaces {@link #batchSize(int)}, and
+         * {@link #parallelism(int)} should be at least its maximum limit. Disabled by default.
+         *
+         * @param concurrencyLimiter the limiter, should be shared between clients of the same Vault
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder concurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+
+            return this;
+        }
+
+        /**
+         * Gathers concurrent {@code encrypt(byte[])} and {@code decrypt(char[])} calls (and their async variants) into
+         * batch requests. A batch is sent once the window passed since its first value, or once it holds
+         * {@link #microBatchSize(int)} values. Every call still gets its own result, at the cost of at most the window
+         * in extra latency. Disabled by default.
+         *
+         * @param microBatchWindow the maximum time a value waits for other values, e.g. 1 millisecond
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder microBatchWindow(Duration microBatchWindow) {
+            this.microBatchWindow = microBatchWindow;
+
+            return this;
+        }
+
+        /**
+         * @param microBatchSize the number of values after which a micro batch is sent without waiting for the rest
+         *                       of its window, 100 by default. The batch size of the {@link ConcurrencyLimiter}
+         *                       replaces it when one is set
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder microBatchSize(int microBatchSize) {
+            this.microBatchSize = microBatchSize;
+
+            return this;
+        }
+
+        /**
+         * Encrypts a plaintext that appears under several property keys once, all of them get the same ciphertext.
+         * Likewise, identical ciphertexts are decrypted or rewrapped once. This saves requests for files with aliased
+         * credentials, but shows which properties hold the same secret. Disabled by default.
+         *
+         * @param deduplicateValues true to send identical values once
+         * @return the builder
+         */
+        public VaultTransitRestClientImpl.Builder deduplicateValues(boolean deduplicateValues) {
+            this.deduplicateValues = deduplicateValues;
+
+            return this;
+        }
     }
 }
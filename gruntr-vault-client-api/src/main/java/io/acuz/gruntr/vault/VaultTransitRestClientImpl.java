@@ -17,128 +17,1249 @@
 package io.acuz.gruntr.vault;
 
 import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.acuz.gruntr.cli.EncryptionKeys;
 import io.acuz.gruntr.util.ArrayUtils;
 import io.acuz.gruntr.util.DigestUtils;
 import io.acuz.gruntr.vault.exception.VaultException;
+import io.acuz.gruntr.vault.metrics.VaultMetricsListener;
 import io.acuz.gruntr.vault.model.VaultToken;
+import io.acuz.gruntr.vault.model.VaultTransitKey;
 
 import java.io.IOException;
+import java.net.ProtocolException;
 import java.net.URL;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
 public final class VaultTransitRestClientImpl implements VaultTransitRestClient {
-    private static final String JSON_DATA_FIELD = "data";
     @SuppressWarnings("UastIncorrectHttpHeaderInspection")
     private static final String HEADER_X_VAULT_TOKEN = "X-Vault-Token";
     private static final String HEADER_ACCEPT = "Accept";
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
     private static final String CONTENT_TYPE_APPLICATION_JSON = "application/json";
     private static final String GRUNTR__PREFIX = "gruntr__";
     private static final String VAULT_PREFIX = "vault:";
-    private final ObjectMapper mapper = new ObjectMapper();
-    private final JsonFactory factory = mapper.getFactory();
+    private static final int DATA_KEY_BITS = 256;
+    private static final String HTTPS_SCHEME = "https";
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final Set<VaultTransitEndpoint> READ_ENDPOINTS = EnumSet.of(VaultTransitEndpoint.DECRYPT, VaultTransitEndpoint.KEYS, VaultTransitEndpoint.VERIFY);
+    private static final long NODE_EJECTION_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long HTTP2_FALLBACK_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // the plain IOExceptions the JDK HTTP client fails a stream with, when Vault reset it because of the protocol
+    private static final Set<String> HTTP2_PROTOCOL_RESETS = Set.of(
+            "Received RST_STREAM: Protocol error",
+            "Received RST_STREAM: Frame size error",
+            "Received RST_STREAM: Compression state not updated",
+            "Received RST_STREAM: Negotiated TLS parameters not acceptable");
+    private final TransitJsonCodec codec = new TransitJsonCodec(new JsonFactory());
     private final URL host;
     private final VaultToken token;
+    private final String tokenHeaderValue;
     private final String transitPath;
     private final String transitKeyName;
+    private final int batchSize;
+    private final int parallelism;
+    private final Duration requestTimeout;
+    private final HttpClient.Version httpVersion;
+    private final DecryptionCache decryptionCache;
+    private final boolean rewrapOnlyStale;
+    private final boolean envelopeEncryption;
+    private final IntegrityMode integrityMode;
+    private final boolean validateConcurrently;
+    private final VaultMetricsListener metricsListener;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final HedgingPolicy hedgingPolicy;
+    private final VaultNodes readNodes;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final MicroBatcher encryptBatcher;
+    private final MicroBatcher decryptBatcher;
+    private final boolean deduplicateValues;
+    private final SingleFlight decryptions = new SingleFlight();
+    private final Set<String> validatedHeaders = ConcurrentHashMap.newKeySet();
+    /**
+     * The {@link System#nanoTime()} until which HTTP/1.1 is used, after HTTP/2 failed.
+     */
+    private volatile long http2FallbackUntil = System.nanoTime();
+    private final ExecutorService ownedExecutor;
+    private final HttpClient httpClient;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    /**
+     * The requests that did not complete yet, with the step of each that is in flight, failed when the client closes.
+     */
+    private final Map<CompletableFuture<?>, AtomicReference<CompletableFuture<?>>> pendingRequests = new ConcurrentHashMap<>();
 
 
     VaultTransitRestClientImpl(Builder builder) {
         this.host = builder.host;
         this.token = builder.token.copyOf();
+        this.tokenHeaderValue = this.token.stringValue();
 
         this.transitPath = builder.transitPath;
         this.transitKeyName = builder.transitKeyName;
+        this.batchSize = builder.batchSize;
+        this.parallelism = builder.parallelism;
+        this.requestTimeout = builder.requestTimeout;
+        this.httpVersion = builder.httpVersion;
+        this.decryptionCache = builder.decryptionCache;
+        this.rewrapOnlyStale = builder.rewrapOnlyStale;
+        this.envelopeEncryption = builder.envelopeEncryption;
+        this.integrityMode = builder.integrityMode;
+        this.validateConcurrently = builder.validateConcurrently;
+        this.metricsListener = builder.metricsListener;
+        this.retryPolicy = builder.retryPolicy;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.hedgingPolicy = builder.hedgingPolicy;
+        this.concurrencyLimiter = builder.concurrencyLimiter;
+        this.deduplicateValues = builder.deduplicateValues;
+        this.encryptBatcher = null == builder.microBatchWindow ? null : microBatcher(VaultTransitEndpoint.ENCRYPT, builder.microBatchWindow, builder.microBatchSize);
+        this.decryptBatcher = null == builder.microBatchWindow ? null : microBatcher(VaultTransitEndpoint.DECRYPT, builder.microBatchWindow, builder.microBatchSize);
+        this.readNodes = builder.readHosts.isEmpty() ? null : new VaultNodes(readPool(builder), NODE_EJECTION_NANOS, System::nanoTime);
+
+        var httpClientBuilder = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .version(this.httpVersion);
+
+        if (null != builder.connectTimeout) {
+            httpClientBuilder.connectTimeout(builder.connectTimeout);
+        }
+
+        if (null == builder.executor) {
+            this.ownedExecutor = Executors.newCachedThreadPool(runnable -> {
+                var thread = new Thread(runnable, "gruntr-vault-client-" + THREAD_COUNTER.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            });
+            httpClientBuilder.executor(this.ownedExecutor);
+        } else {
+            this.ownedExecutor = null;
+            httpClientBuilder.executor(builder.executor);
+        }
+
+        this.httpClient = httpClientBuilder.build();
+    }
+
+    private MicroBatcher microBatcher(VaultTransitEndpoint endpoint, Duration window, int size) {
+        var windowExecutor = CompletableFuture.delayedExecutor(window.toNanos(), TimeUnit.NANOSECONDS);
+
+        IntSupplier maxBatchSize = () -> null == concurrencyLimiter ? size : concurrencyLimiter.getBatchSize();
+
+        return new MicroBatcher(maxBatchSize, windowExecutor, values -> {
+            if (1 == values.size()) {
+                // a lone value is sent as a plain request
+                var response = request(endpoint, values.get(0));
+
+                return propagateCancellation(response.thenApply(value -> List.of(BatchItem.success(value))), response);
+            }
+
+            return requestBatchRetryingItems(endpoint, values, 1, 0);
+        });
+    }
+
+    /**
+     * Sends the values of a micro batch as one batch request. Like {@link #requestBatchItems}, the values that Vault
+     * rejected individually with a transient error are sent again, as a smaller batch, as long as the retry policy
+     * allows it. Every other value keeps its own outcome.
+     */
+    private CompletableFuture<List<BatchItem>> requestBatchRetryingItems(VaultTransitEndpoint endpoint, List<byte[]> values,
+                                                                         int attempt, long previousDelay) {
+        var response = requestBatch(endpoint, values);
+        var inFlight = new AtomicReference<CompletableFuture<?>>(response);
+
+        return propagateCancellation(response.thenCompose(items -> {
+            var failed = new ArrayList<Integer>();
+
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).isFailure() && RetryPolicy.isRetryable(items.get(i).getError())) {
+                    failed.add(i);
+                }
+            }
+
+            if (failed.isEmpty() || !retryPolicy.canRetry(attempt) || closed.get()) {
+                return CompletableFuture.completedFuture(items);
+            }
+
+            var inputs = new ArrayList<byte[]>(failed.size());
+            failed.forEach(i -> inputs.add(values.get(i)));
+
+            var delay = retryPolicy.nextDelayNanos(previousDelay, 0);
+            var retry = delay(delay).thenCompose(ignored -> requestBatchRetryingItems(endpoint, inputs, attempt + 1, delay));
+            inFlight.set(retry);
+
+            return retry.handle((retried, throwable) -> {
+                var results = new ArrayList<>(items);
+
+                for (int i = 0; i < failed.size(); i++) {
+                    // the values that already succeeded are not failed along with the retry
+                    results.set(failed.get(i), null != throwable
+                            ? BatchItem.failure(toVaultException(throwable).getMessage())
+                            : retried.get(i));
+                }
+
+                return (List<BatchItem>) results;
+            });
+        }), inFlight);
+    }
+
+    /**
+     * The host and the read hosts, without duplicates.
+     */
+    private static List<URL> readPool(Builder builder) {
+        var pool = new LinkedHashMap<String, URL>();
+        pool.put(builder.host.toExternalForm(), builder.host);
+        builder.readHosts.forEach(readHost -> pool.putIfAbsent(readHost.toExternalForm(), readHost));
+
+        return List.copyOf(pool.values());
+    }
+
+    /**
+     * Waits for the outcome of an asynchronous operation, unwrapping the failure it completed with. Runtime
+     * exceptions (such as failed validations) are rethrown as is, everything else is reported as a
+     * {@link VaultException}. When interrupted, the operation is cancelled.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws VaultException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+
+            throw new VaultException("Interrupted while waiting for Vault", e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw toVaultException(cause);
+        }
+    }
+
+    private static VaultException toVaultException(Throwable throwable) {
+        if (throwable instanceof CompletionException && null != throwable.getCause()) {
+            return toVaultException(throwable.getCause());
+        }
+
+        if (throwable instanceof VaultException) {
+            return (VaultException) throwable;
+        }
+
+        if (throwable instanceof Exception) {
+            return new VaultException("Unable to communicate with Vault", (Exception) throwable);
+        }
+
+        throw new IllegalStateException(throwable);
+    }
+
+    /**
+     * Cancelling a dependent future does not cancel the future it was derived from, this links both so that
+     * cancelling (or timing out) the former aborts the latter, e.g. the in-flight HTTP exchange.
+     */
+    private static <T> CompletableFuture<T> propagateCancellation(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+        dependent.whenComplete((result, throwable) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+
+        return dependent;
+    }
+
+    @Override
+    public char[] encrypt(byte[] value) throws VaultException {
+        return await(encryptAsync(value));
+    }
+
+    @Override
+    public char[] decrypt(char[] value) throws VaultException {
+        return await(decryptAsync(value));
+    }
+
+    @Override
+    public char[] rewrap(char[] value) throws VaultException {
+        return await(rewrapAsync(value));
+    }
+
+    @Override
+    public CompletableFuture<char[]> encryptAsync(byte[] value) {
+        if (null != this.encryptBatcher) {
+            return this.encryptBatcher.submit(value);
+        }
+
+        return this.request(
+                VaultTransitEndpoint.ENCRYPT,
+                value
+        );
+    }
+
+    @Override
+    public CompletableFuture<char[]> decryptAsync(char[] value) {
+        var cacheKey = cacheKey(value);
+
+        if (null == this.decryptionCache) {
+            return this.decryptions.execute(cacheKey, () -> this.requestDecrypt(value));
+        }
+
+        var cached = this.decryptionCache.get(cacheKey);
+
+        if (null != cached) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // concurrent misses for the same ciphertext share the request, and fill the cache once
+        return this.decryptions.execute(cacheKey, () -> {
+            var response = this.requestDecrypt(value);
+
+            return propagateCancellation(response.thenApply(plaintext -> {
+                this.decryptionCache.put(cacheKey, plaintext);
+
+                return plaintext;
+            }), response);
+        });
+    }
+
+    private CompletableFuture<char[]> requestDecrypt(char[] value) {
+        if (null != this.decryptBatcher) {
+            return this.decryptBatcher.submit(ArrayUtils.toByteArray(value));
+        }
+
+        return this.request(
+                VaultTransitEndpoint.DECRYPT,
+                ArrayUtils.toByteArray(value)
+        );
+    }
+
+    private String cacheKey(char[] ciphertext) {
+        return DecryptionCache.key(this.host.toExternalForm(), this.transitPath, this.transitKeyName, ciphertext);
+    }
+
+    /**
+     * Decrypts the ciphertexts, by property key. Values found in the {@link DecryptionCache} (if any) are not sent
+     * to Vault, the others are added to it once the header of their properties was validated.
+     *
+     * @param validation completes once the header of the properties is valid, the result is not released before
+     */
+    private CompletableFuture<Map<String, char[]>> decryptAll(Map<String, byte[]> ciphertexts, CompletableFuture<Void> validation) {
+        if (null == this.decryptionCache) {
+            return requestAll(VaultTransitEndpoint.DECRYPT, ciphertexts);
+        }
+
+        var plaintexts = new LinkedHashMap<String, char[]>(ciphertexts.size());
+        var misses = new LinkedHashMap<String, byte[]>();
+        var cacheKeys = new LinkedHashMap<String, String>();
+
+        ciphertexts.forEach((key, ciphertext) -> {
+            var cacheKey = cacheKey(ArrayUtils.toCharArray(ciphertext));
+            var cached = this.decryptionCache.get(cacheKey);
+
+            if (null == cached) {
+                misses.put(key, ciphertext);
+                cacheKeys.put(key, cacheKey);
+            } else {
+                plaintexts.put(key, cached);
+            }
+        });
+
+        if (misses.isEmpty()) {
+            return CompletableFuture.completedFuture(plaintexts);
+        }
+
+        var decrypted = requestAll(VaultTransitEndpoint.DECRYPT, misses);
+
+        // a file that fails validation must not warm the cache
+        validation.whenComplete((ignored, throwable) -> {
+            if (null != throwable) {
+                discard(decrypted);
+                plaintexts.values().forEach(value -> Arrays.fill(value, '\0'));
+            }
+        });
+
+        return propagateCancellation(decrypted.thenCombine(validation, (values, ignored) -> {
+            values.forEach((key, plaintext) -> {
+                this.decryptionCache.put(cacheKeys.get(key), plaintext);
+                plaintexts.put(key, plaintext);
+            });
+
+            return plaintexts;
+        }), decrypted);
+    }
+
+    @Override
+    public CompletableFuture<char[]> rewrapAsync(char[] value) {
+        return this.request(
+                VaultTransitEndpoint.REWRAP,
+                ArrayUtils.toByteArray(value)
+        );
+    }
+
+    private CompletableFuture<char[]> request(VaultTransitEndpoint endpoint, byte[] value) {
+        byte[] data;
+
+        try {
+            data = codec.writeRequest(endpoint, value);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new VaultException("Unable to create the Vault request", e));
+        }
+
+        return sendHedged(endpoint, data, 1, false, body -> codec.readResponse(endpoint, body), plaintext -> Arrays.fill(plaintext, '\0'));
+    }
+
+    private CompletableFuture<List<BatchItem>> requestBatch(VaultTransitEndpoint endpoint, List<byte[]> values) {
+        byte[] data;
+
+        try {
+            data = codec.writeBatchRequest(endpoint, values);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new VaultException("Unable to create the Vault request", e));
+        }
+
+        // Vault answers with status 400 when every value of the batch failed, its batch results still say why
+        return sendHedged(endpoint, data, values.size(), true, body -> codec.readBatchResponse(endpoint, body, values.size()), items -> items.forEach(item -> {
+            if (!item.isFailure()) {
+                Arrays.fill(item.getValue(), '\0');
+            }
+        }));
+    }
+
+    /**
+     * Reads the version metadata of the transit key.
+     */
+    private CompletableFuture<VaultTransitKey> readKey() {
+        return send(VaultTransitEndpoint.KEYS, null, 0, codec::readKey);
+    }
+
+    /**
+     * Generates a new data key, the caller is responsible for wiping it.
+     */
+    private CompletableFuture<DataKey> requestDataKey() {
+        byte[] data;
+
+        try {
+            data = codec.writeDataKeyRequest(DATA_KEY_BITS);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new VaultException("Unable to create the Vault request", e));
+        }
+
+        return send(VaultTransitEndpoint.DATAKEY, data, 1, codec::readDataKey);
+    }
+
+    /**
+     * Unwraps a data key with a single call to Vault, the caller is responsible for wiping it.
+     */
+    private CompletableFuture<DataKey> unwrapDataKey(String wrappedDataKey) {
+        var wrapped = wrappedDataKey.trim();
+        var dataKey = request(VaultTransitEndpoint.DECRYPT, wrapped.getBytes(StandardCharsets.UTF_8));
+
+        return propagateCancellation(dataKey.thenApply(keyChars -> {
+            var key = ArrayUtils.toByteArray(keyChars);
+            Arrays.fill(keyChars, '\0');
+
+            return new DataKey(key, wrapped.toCharArray());
+        }), dataKey);
+    }
+
+    /**
+     * Encrypts the values locally, see {@link EnvelopeCipher}, with the given wrapped data key or with a new one when
+     * it's null. The wrapped data key is added to the encrypted properties.
+     */
+    private CompletableFuture<Map<String, char[]>> encryptLocally(Map<String, byte[]> plaintexts, Properties encryptedProperties, String wrappedDataKey) {
+        var dataKey = null == wrappedDataKey ? requestDataKey() : unwrapDataKey(wrappedDataKey);
+
+        return propagateCancellation(dataKey.thenApply(key -> {
+            try {
+                var ciphertexts = new LinkedHashMap<String, char[]>(plaintexts.size());
+
+                for (var entry : plaintexts.entrySet()) {
+                    ciphertexts.put(entry.getKey(), EnvelopeCipher.encrypt(key.getPlaintext(), entry.getKey(), entry.getValue()));
+                }
+
+                encryptedProperties.put(GRUNTR__DATA_KEY, String.copyValueOf(key.getCiphertext()));
+
+                return ciphertexts;
+            } catch (VaultException e) {
+                throw new CompletionException(e);
+            } finally {
+                key.wipe();
+            }
+        }), dataKey);
+    }
+
+    /**
+     * Unwraps the data key with a single call to Vault, then decrypts the values locally. The data key is wiped once
+     * all values are decrypted.
+     */
+    private CompletableFuture<Map<String, char[]>> decryptLocally(String wrappedDataKey, Map<String, String> ciphertexts) {
+        if (ciphertexts.isEmpty()) {
+            return CompletableFuture.completedFuture(new LinkedHashMap<>());
+        }
+
+        if (null == wrappedDataKey) {
+            return CompletableFuture.failedFuture(new VaultException("Unable to decrypt properties, missing " + GRUNTR__DATA_KEY));
+        }
+
+        var dataKey = unwrapDataKey(wrappedDataKey);
+
+        return propagateCancellation(dataKey.thenApply(key -> {
+            try {
+                var plaintexts = new LinkedHashMap<String, char[]>(ciphertexts.size());
+
+                for (var entry : ciphertexts.entrySet()) {
+                    var plaintext = EnvelopeCipher.decrypt(key.getPlaintext(), entry.getKey(), entry.getValue());
+                    plaintexts.put(entry.getKey(), ArrayUtils.toCharArray(plaintext));
+                    Arrays.fill(plaintext, (byte) 0);
+                }
+
+                return plaintexts;
+            } catch (VaultException e) {
+                throw new CompletionException(e);
+            } finally {
+                key.wipe();
+            }
+        }), dataKey);
+    }
+
+    /**
+     * Posts the request body to the endpoint, or gets it when there is no body. When Vault answered with status 200,
+     * the returned future completes with the response read from the body. Both bodies are wiped once the exchange is
+     * over, as they may hold plaintext.
+     *
+     * @param batchSize the number of values in the request body, reported to the metrics listener
+     * @param reader    reads the response from the body
+     */
+    private <T> CompletableFuture<T> send(VaultTransitEndpoint endpoint, byte[] data, int batchSize, ResponseReader<T> reader) {
+        return send(endpoint, data, batchSize, false, reader);
+    }
+
+    /**
+     * See {@link #send(VaultTransitEndpoint, byte[], int, ResponseReader)}.
+     *
+     * @param readsClientErrors true to also read the response from the body when Vault answered with a 4xx status,
+     *                          the status is reported as the failure when the body holds no response
+     */
+    private <T> CompletableFuture<T> send(VaultTransitEndpoint endpoint, byte[] data, int batchSize, boolean readsClientErrors,
+                                          ResponseReader<T> reader) {
+        if (closed.get()) {
+            wipe(data);
+
+            return CompletableFuture.failedFuture(new VaultException("Vault client is closed"));
+        }
+
+        var event = new VaultRequestEvent();
+        event.begin();
+
+        var bytesOut = null == data ? 0 : data.length;
+        var start = System.nanoTime();
+        var inFlight = new AtomicReference<CompletableFuture<?>>();
+        var response = attempt(endpoint, data, batchSize, event, inFlight, 1, 0);
+
+        return track(propagateCancellation(response.handle((httpResponse, throwable) -> {
+            wipe(data);
+
+            var received = System.nanoTime();
+
+            if (null != throwable) {
+                var failure = toVaultException(throwable);
+                commit(event, endpoint, batchSize, bytesOut, null, start, received, failure);
+
+                throw new CompletionException(failure);
+            }
+
+            var body = httpResponse.body();
+            VaultException failure = null;
+
+            try {
+                if (200 != httpResponse.statusCode()) {
+                    failure = new VaultException("Vault was unable to handle request, returned statusCode: " + httpResponse.statusCode(),
+                            httpResponse.statusCode());
+
+                    if (readsClientErrors && isClientError(httpResponse.statusCode())) {
+                        try {
+                            return reader.read(body);
+                        } catch (IOException | VaultException e) {
+                            // not a response, e.g. a permission error
+                        }
+                    }
+
+                    throw new CompletionException(failure);
+                }
+
+                return reader.read(body);
+            } catch (IOException e) {
+                failure = new VaultException("Unable to parse the Vault response", e);
+                throw new CompletionException(failure);
+            } catch (VaultException e) {
+                failure = e;
+                throw new CompletionException(e);
+            } finally {
+                wipe(body);
+                commit(event, endpoint, batchSize, bytesOut, httpResponse, start, received, failure);
+            }
+        }), inFlight), inFlight);
+    }
+
+    /**
+     * Keeps track of a request until it completes, so that closing the client fails it.
+     */
+    private <T> CompletableFuture<T> track(CompletableFuture<T> request, AtomicReference<CompletableFuture<?>> inFlight) {
+        pendingRequests.put(request, inFlight);
+        request.whenComplete((result, throwable) -> pendingRequests.remove(request));
+
+        if (closed.get()) {
+            // closed while the request was being sent
+            abort(request, inFlight);
+        }
+
+        return request;
+    }
+
+    /**
+     * Fails a request because the client is closed, and aborts its step that is in flight, e.g. the HTTP exchange.
+     */
+    private static void abort(CompletableFuture<?> request, AtomicReference<CompletableFuture<?>> inFlight) {
+        request.completeExceptionally(new VaultException("Vault client is closed"));
+
+        var current = inFlight.get();
+
+        if (null != current) {
+            current.cancel(true);
+        }
+    }
+
+    /**
+     * Sends a decrypt request, and a duplicate of it when it did not complete within the delay of the hedging policy
+     * and the budget allows it. The first successful response is used, the other request is cancelled, or discarded
+     * when it completed too. Requests for more than one value are not hedged.
+     *
+     * @param readsClientErrors see {@link #send(VaultTransitEndpoint, byte[], int, boolean, ResponseReader)}
+     * @param discard           wipes a response that is not used
+     */
+    private <T> CompletableFuture<T> sendHedged(VaultTransitEndpoint endpoint, byte[] data, int batchSize, boolean readsClientErrors,
+                                                ResponseReader<T> reader, Consumer<T> discard) {
+        if (null == this.hedgingPolicy || VaultTransitEndpoint.DECRYPT != endpoint || batchSize > 1) {
+            return send(endpoint, data, batchSize, readsClientErrors, reader);
+        }
+
+        this.hedgingPolicy.onRequest();
+
+        // the request body is wiped by the request that used it, the hedge needs its own copy. It only holds
+        // ciphertexts, a copy that is never sent is left to the garbage collector
+        var hedgeData = data.clone();
+        var result = new CompletableFuture<T>();
+        var pending = new AtomicInteger(1);
+        var requests = new CopyOnWriteArrayList<CompletableFuture<T>>();
+
+        Consumer<CompletableFuture<T>> race = request -> {
+            requests.add(request);
+
+            var start = System.nanoTime();
+
+            request.whenComplete((value, throwable) -> {
+                if (null == throwable) {
+                    this.hedgingPolicy.record(System.nanoTime() - start);
+
+                    if (result.complete(value)) {
+                        requests.forEach(other -> other.cancel(true));
+                    } else {
+                        discard.accept(value);
+                    }
+                } else if (0 == pending.decrementAndGet()) {
+                    result.completeExceptionally(throwable);
+                }
+            });
+
+            if (result.isDone()) {
+                request.cancel(true);
+            }
+        };
+
+        race.accept(send(endpoint, data, batchSize, readsClientErrors, reader));
+
+        var hedge = delay(this.hedgingPolicy.delayNanos()).thenRun(() -> {
+            if (!result.isDone() && !closed.get() && this.hedgingPolicy.tryAcquire()) {
+                pending.incrementAndGet();
+                race.accept(send(endpoint, hedgeData, batchSize, readsClientErrors, reader));
+            }
+        });
+
+        result.whenComplete((value, throwable) -> {
+            hedge.cancel(false);
+
+            if (result.isCancelled()) {
+                requests.forEach(request -> request.cancel(true));
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Sends the request, and sends it again as long as it fails in a retryable way and the retry policy allows it.
+     * The returned future completes with the last response, whatever its status code, or fails when the last attempt
+     * got no response.
+     */
+    private CompletableFuture<HttpResponse<byte[]>> attempt(VaultTransitEndpoint endpoint, byte[] data, int batchSize, VaultRequestEvent event,
+                                                           AtomicReference<CompletableFuture<?>> inFlight, int attempt, long previousDelay) {
+        if (null != circuitBreaker && !circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new VaultException("Vault is considered unavailable, its circuit breaker is open"));
+        }
+
+        if (null == concurrencyLimiter) {
+            return transmit(endpoint, data, batchSize, event, inFlight, attempt, previousDelay);
+        }
+
+        var permit = concurrencyLimiter.acquire();
+        inFlight.set(permit);
+
+        return permit.thenCompose(ignored -> {
+            try {
+                return transmit(endpoint, data, batchSize, event, inFlight, attempt, previousDelay);
+            } catch (RuntimeException e) {
+                // the request never left, so its outcome cannot release the permit
+                concurrencyLimiter.onCancel();
+                throw e;
+            }
+        });
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> transmit(VaultTransitEndpoint endpoint, byte[] data, int batchSize, VaultRequestEvent event,
+                                                            AtomicReference<CompletableFuture<?>> inFlight, int attempt, long previousDelay) {
+        var node = null == readNodes || !READ_ENDPOINTS.contains(endpoint) ? null : readNodes.select();
+        var url = null == node ? this.host : node.getUrl();
+        var bytesOut = null == data ? 0 : data.length;
+        var start = System.nanoTime();
+        var version = transportVersion(url);
+
+        event.host = url.toExternalForm();
+
+        if (null != node) {
+            readNodes.onStart(node);
+        }
+
+        CompletableFuture<HttpResponse<byte[]>> exchange;
+
+        try {
+            exchange = exchange(endpoint, url, data, version, event);
+        } catch (RuntimeException e) {
+            if (null != node) {
+                readNodes.onCancel(node);
+            }
+
+            throw e;
+        }
+
+        inFlight.set(exchange);
+
+        return exchange
+                .handle((httpResponse, throwable) -> {
+                    if (null != throwable && HttpClient.Version.HTTP_2 == version && isHttp2Failure(throwable)) {
+                        // Vault or a proxy in between does not speak HTTP/2 properly, use HTTP/1.1 for a while
+                        http2FallbackUntil = System.nanoTime() + HTTP2_FALLBACK_NANOS;
+
+                        var fallback = exchange(endpoint, url, data, HttpClient.Version.HTTP_1_1, event);
+                        inFlight.set(fallback);
+                        event.retries++;
+
+                        return fallback;
+                    }
+
+                    return null == throwable
+                            ? CompletableFuture.completedFuture(httpResponse)
+                            : CompletableFuture.<HttpResponse<byte[]>>failedFuture(throwable);
+                })
+                .thenCompose(Function.identity())
+                .handle((httpResponse, throwable) -> {
+                    var latency = System.nanoTime() - start;
+                    var retryable = null == throwable
+                            ? retryPolicy.isRetryable(httpResponse.statusCode())
+                            : RetryPolicy.isRetryable(throwable);
+
+                    if (null == throwable) {
+                        reportResponse(endpoint, batchSize, bytesOut, httpResponse.body().length, httpResponse.statusCode(), latency);
+                    } else {
+                        reportFailure(endpoint, batchSize, bytesOut, throwable, latency);
+                    }
+
+                    if (null != circuitBreaker && !isCancellation(throwable)) {
+                        if (retryable) {
+                            circuitBreaker.onFailure();
+                        } else {
+                            circuitBreaker.onSuccess();
+                        }
+                    }
+
+                    if (null != concurrencyLimiter) {
+                        if (isCancellation(throwable)) {
+                            concurrencyLimiter.onCancel();
+                        } else if (null != throwable || isOverload(httpResponse.statusCode())) {
+                            concurrencyLimiter.onOverload();
+                        } else {
+                            concurrencyLimiter.onSuccess(latency, batchSize);
+                        }
+                    }
+
+                    if (null != node) {
+                        if (isCancellation(throwable)) {
+                            readNodes.onCancel(node);
+                        } else if (retryable) {
+                            readNodes.onFailure(node, latency);
+                        } else {
+                            readNodes.onSuccess(node, latency);
+                        }
+                    }
+
+                    if (retryable && retryPolicy.canRetry(attempt) && !closed.get()) {
+                        var retryAfter = null == httpResponse ? 0 : RetryPolicy.retryAfterNanos(httpResponse.headers().firstValue(HEADER_RETRY_AFTER).orElse(null));
+                        var delay = retryPolicy.nextDelayNanos(previousDelay, retryAfter);
+                        event.retries++;
+
+                        var retry = delay(delay).thenCompose(ignored -> attempt(endpoint, data, batchSize, event, inFlight, attempt + 1, delay));
+                        inFlight.set(retry);
+
+                        return retry;
+                    }
+
+                    return null == throwable
+                            ? CompletableFuture.completedFuture(httpResponse)
+                            : CompletableFuture.<HttpResponse<byte[]>>failedFuture(throwable);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private static CompletableFuture<Void> delay(long nanos) {
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(nanos, TimeUnit.NANOSECONDS));
+    }
+
+    private static boolean isClientError(int statusCode) {
+        return statusCode >= 400 && statusCode < 500;
+    }
+
+    private static boolean isOverload(int statusCode) {
+        return 429 == statusCode || 503 == statusCode;
+    }
+
+    private static boolean isCancellation(Throwable throwable) {
+        var cause = throwable instanceof CompletionException && null != throwable.getCause()
+                ? throwable.getCause()
+                : throwable;
+
+        return cause instanceof CancellationException;
+    }
+
+    /**
+     * Completes the flight recorder event of a request, when recording it.
+     */
+    private void commit(VaultRequestEvent event, VaultTransitEndpoint endpoint, int batchSize, int bytesOut,
+                        HttpResponse<byte[]> response, long start, long received, VaultException failure) {
+        event.end();
+
+        if (event.shouldCommit()) {
+            var headersAt = 0 == event.headersAt ? received : event.headersAt;
+
+            event.operation = endpoint.getAction();
+            event.transitPath = this.transitPath;
+            event.keyName = this.transitKeyName;
+            event.batchSize = batchSize;
+            event.bytesOut = bytesOut;
+            event.waiting = headersAt - start;
+            event.receiving = received - headersAt;
+            event.parsing = System.nanoTime() - received;
+
+            if (null != response) {
+                event.statusCode = response.statusCode();
+                event.bytesIn = response.body().length;
+            }
+
+            if (null != failure) {
+                event.failure = failure.getMessage();
+            }
+
+            event.commit();
+        }
+    }
+
+    private void reportResponse(VaultTransitEndpoint endpoint, int batchSize, int bytesOut, int bytesIn, int statusCode, long latency) {
+        try {
+            metricsListener.onResponse(endpoint.getAction(), batchSize, bytesOut, bytesIn, statusCode, latency);
+        } catch (RuntimeException ignored) {
+            // a failing listener should not fail the call
+        }
+    }
+
+    private void reportFailure(VaultTransitEndpoint endpoint, int batchSize, int bytesOut, Throwable throwable, long latency) {
+        try {
+            metricsListener.onFailure(endpoint.getAction(), batchSize, bytesOut, throwable, latency);
+        } catch (RuntimeException ignored) {
+            // a failing listener should not fail the call
+        }
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> exchange(VaultTransitEndpoint endpoint, URL url, byte[] data, HttpClient.Version version, VaultRequestEvent event) {
+        var requestBuilder = HttpRequest.newBuilder()
+                .uri(endpoint.from(url, this.transitPath, transitKeyName))
+                .version(version)
+                .header(HEADER_X_VAULT_TOKEN, this.tokenHeaderValue)
+                .header(HEADER_ACCEPT, CONTENT_TYPE_APPLICATION_JSON);
+
+        if (null == data) {
+            requestBuilder.GET();
+        } else {
+            requestBuilder.POST(HttpRequest.BodyPublishers.ofByteArray(data));
+        }
+
+        if (null != this.requestTimeout) {
+            requestBuilder.timeout(this.requestTimeout);
+        }
+
+        return this.httpClient.sendAsync(requestBuilder.build(), responseInfo -> {
+            event.headersAt = System.nanoTime();
+
+            return HttpResponse.BodySubscribers.ofByteArray();
+        });
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<T> {
+        T read(byte[] body) throws IOException, VaultException;
+    }
+
+    private static void wipe(byte[] data) {
+        if (null != data) {
+            Arrays.fill(data, (byte) 0);
+        }
+    }
+
+    /**
+     * HTTP/2 is only used over TLS, where it is negotiated through ALPN and the JDK falls back to HTTP/1.1 when Vault
+     * does not offer it. Vault does not support the cleartext upgrade (h2c), so plain http hosts always use HTTP/1.1.
+     * After an HTTP/2 protocol failure, HTTP/1.1 is used for {@link #HTTP2_FALLBACK_NANOS}.
+     */
+    HttpClient.Version transportVersion(URL url) {
+        if (HttpClient.Version.HTTP_2 == this.httpVersion && HTTPS_SCHEME.equalsIgnoreCase(url.getProtocol())
+                && System.nanoTime() - http2FallbackUntil >= 0) {
+            return HttpClient.Version.HTTP_2;
+        }
+
+        return HttpClient.Version.HTTP_1_1;
+    }
+
+    /**
+     * @return true if the request failed on the HTTP/2 protocol itself: a {@link ProtocolException}, or a stream Vault
+     * reset with a protocol error code. Not on the network, which would fail over HTTP/1.1 just as well
+     */
+    private static boolean isHttp2Failure(Throwable throwable) {
+        for (var cause = throwable; null != cause; cause = cause.getCause()) {
+            if (cause instanceof ProtocolException) {
+                return true;
+            }
+
+            if (IOException.class == cause.getClass() && null != cause.getMessage() && HTTP2_PROTOCOL_RESETS.contains(cause.getMessage())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sends the values to the given endpoint, see {@link #requestBatches(VaultTransitEndpoint, Map)}. With
+     * {@code deduplicateValues}, every distinct value is sent once and the properties carrying the same value get a
+     * copy of its output.
+     */
+    private CompletableFuture<Map<String, char[]>> requestAll(VaultTransitEndpoint endpoint, Map<String, byte[]> values) {
+        if (!this.deduplicateValues) {
+            return requestBatches(endpoint, values);
+        }
+
+        var distinct = new LinkedHashMap<String, byte[]>();
+        var duplicates = new HashMap<String, String>();
+        var firstKeys = new HashMap<ByteBuffer, String>();
+
+        values.forEach((key, value) -> {
+            var firstKey = firstKeys.putIfAbsent(ByteBuffer.wrap(value), key);
+
+            if (null == firstKey) {
+                distinct.put(key, value);
+            } else {
+                duplicates.put(key, firstKey);
+            }
+        });
+
+        if (duplicates.isEmpty()) {
+            return requestBatches(endpoint, values);
+        }
+
+        var response = requestBatches(endpoint, distinct);
+
+        return propagateCancellation(response.thenApply(outputs -> {
+            var results = new LinkedHashMap<String, char[]>(values.size());
+
+            values.keySet().forEach(key -> {
+                var firstKey = duplicates.get(key);
+
+                results.put(key, null == firstKey ? outputs.get(key) : outputs.get(firstKey).clone());
+            });
+
+            return (Map<String, char[]>) results;
+        }), response);
+    }
+
+    /**
+     * Sends all values to the given endpoint, grouped in batches of at most {@code batchSize} values (or the batch
+     * size of the concurrency limiter), with at most {@code parallelism} requests in flight. The result maps each
+     * property key to the output Vault returned for its value.
+     *
+     * @param endpoint the transit endpoint to call
+     * @param values   the values to send, by property key
+     * @return the output values, by property key. Fails with a {@link VaultException} if Vault could not be
+     * reached or rejected one of the values, the message names the property key that failed. The requests that are
+     * still in flight at that moment are cancelled.
+     */
+    private CompletableFuture<Map<String, char[]>> requestBatches(VaultTransitEndpoint endpoint, Map<String, byte[]> values) {
+        var keys = new ArrayList<>(values.keySet());
+        var tasks = new ArrayList<Supplier<CompletableFuture<Map<String, char[]>>>>();
+
+        var size = null == concurrencyLimiter ? this.batchSize : concurrencyLimiter.getBatchSize();
+
+        for (int from = 0; from < keys.size(); from += size) {
+            var chunk = keys.subList(from, Math.min(from + size, keys.size()));
+
+            tasks.add(() -> requestChunk(endpoint, chunk, values));
+        }
+
+        var chunkResults = BoundedDispatcher.dispatch(tasks, parallelism);
+
+        return propagateCancellation(chunkResults.thenApply(chunks -> {
+            var results = new LinkedHashMap<String, char[]>(values.size());
+            chunks.forEach(results::putAll);
+
+            return (Map<String, char[]>) results;
+        }), chunkResults);
+    }
+
+    private CompletableFuture<Map<String, char[]>> requestChunk(VaultTransitEndpoint endpoint, List<String> chunk, Map<String, byte[]> values) {
+        if (1 == chunk.size()) {
+            var key = chunk.get(0);
+            var response = request(endpoint, values.get(key));
+
+            return propagateCancellation(response.handle((value, throwable) -> {
+                if (null != throwable) {
+                    throw new CompletionException(new VaultException("Vault was unable to handle property '" + key + "'", toVaultException(throwable)));
+                }
+
+                return Map.of(key, value);
+            }), response);
+        }
+
+        return requestBatchItems(endpoint, chunk, values, 1, 0);
+    }
+
+    /**
+     * Sends the values as one batch request. The values that Vault rejected individually with a transient error are
+     * sent again, as a smaller batch, as long as the retry policy allows it. A value rejected for another reason fails
+     * the request right away.
+     */
+    private CompletableFuture<Map<String, char[]>> requestBatchItems(VaultTransitEndpoint endpoint, List<String> keys, Map<String, byte[]> values,
+                                                                    int attempt, long previousDelay) {
+        var inputs = new ArrayList<byte[]>(keys.size());
+        keys.forEach(key -> inputs.add(values.get(key)));
+
+        var response = requestBatch(endpoint, inputs);
+        var inFlight = new AtomicReference<CompletableFuture<?>>(response);
+
+        return propagateCancellation(response.thenCompose(items -> {
+            var results = new LinkedHashMap<String, char[]>(keys.size());
+            var failed = new ArrayList<String>();
+            String error = null;
+            var permanent = false;
+
+            for (int i = 0; i < keys.size(); i++) {
+                var item = items.get(i);
+
+                if (item.isFailure()) {
+                    var retryable = RetryPolicy.isRetryable(item.getError());
+
+                    failed.add(keys.get(i));
+
+                    if (null == error || (!retryable && !permanent)) {
+                        error = "Vault was unable to handle property '" + keys.get(i) + "': " + item.getError();
+                    }
+
+                    permanent |= !retryable;
+                } else {
+                    results.put(keys.get(i), item.getValue());
+                }
+            }
+
+            if (failed.isEmpty()) {
+                return CompletableFuture.completedFuture((Map<String, char[]>) results);
+            }
+
+            if (permanent || !retryPolicy.canRetry(attempt) || closed.get()) {
+                results.values().forEach(value -> Arrays.fill(value, '\0'));
+
+                return CompletableFuture.<Map<String, char[]>>failedFuture(new VaultException(error));
+            }
+
+            var delay = retryPolicy.nextDelayNanos(previousDelay, 0);
+            var retry = delay(delay).thenCompose(ignored -> requestBatchItems(endpoint, failed, values, attempt + 1, delay));
+            inFlight.set(retry);
+
+            return retry.handle((retried, throwable) -> {
+                if (null != throwable) {
+                    results.values().forEach(value -> Arrays.fill(value, '\0'));
+
+                    throw new CompletionException(toVaultException(throwable));
+                }
+
+                results.putAll(retried);
+
+                return (Map<String, char[]>) results;
+            });
+        }), inFlight);
     }
 
     @Override
-    public char[] encrypt(byte[] value) throws VaultException {
-        return this.request(
-                VaultTransitEndpoint.ENCRYPT,
-                Base64.getEncoder().encodeToString(value).toCharArray()
-        );
+    public Properties decrypt(Properties properties) throws VaultException {
+        return await(decryptAsync(properties));
     }
 
     @Override
-    public char[] decrypt(char[] value) throws VaultException {
-        char[] base64EncodedPlainText = this.request(
-                VaultTransitEndpoint.DECRYPT,
-                value
-        );
+    public Properties encrypt(Properties properties) throws VaultException {
+        return await(encryptAsync(properties));
+    }
 
-        return ArrayUtils.toCharArray(
-                Base64.getDecoder().decode(
-                        String.copyValueOf(base64EncodedPlainText)));
+    @Override
+    public Properties encrypt(Properties properties, Properties previous) throws VaultException {
+        return await(encryptAsync(properties, previous));
     }
 
     @Override
-    public char[] rewrap(char[] value) throws VaultException {
-        return this.request(
-                VaultTransitEndpoint.REWRAP,
-                value
-        );
+    public Properties rewrap(Properties properties) throws VaultException {
+        return await(rewrapAsync(properties));
     }
 
-    private char[] request(VaultTransitEndpoint endpoint, char[] value) throws VaultException {
-        var inputFieldName = endpoint.getInputFieldName();
-        var outputFieldName = endpoint.getOutputFieldName();
+    @Override
+    public void validate(Properties properties) throws VaultException {
+        await(validateAsync(properties));
+    }
 
-        var httpClient = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NEVER)
-                .version(HttpClient.Version.HTTP_1_1)
-                .build();
+    @Override
+    public CompletableFuture<Void> validateAsync(Properties properties) {
+        return recorded("validate", properties, () -> validateProperties(properties));
+    }
 
-        var data = String.format("{\"%s\": \"%s\"}", inputFieldName, String.copyValueOf(value));
+    @Override
+    public CompletableFuture<Properties> decryptAsync(Properties properties) {
+        return recorded("decrypt", properties, () -> decryptProperties(properties));
+    }
 
-        var request = HttpRequest.newBuilder()
-                .uri(endpoint.from(this.host, this.transitPath, transitKeyName))
-                .header(HEADER_X_VAULT_TOKEN, this.token.stringValue())
-                .header(HEADER_ACCEPT, CONTENT_TYPE_APPLICATION_JSON)
-                .POST(HttpRequest.BodyPublishers.ofString(data))
-                .build();
+    @Override
+    public CompletableFuture<Properties> encryptAsync(Properties properties) {
+        return recorded("encrypt", properties, () -> encryptProperties(properties));
+    }
 
-        try {
-            var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    @Override
+    public CompletableFuture<Properties> encryptAsync(Properties properties, Properties previous) {
+        requireNonNull(previous, "Previous properties should not be null");
 
-            if (200 == response.statusCode()) {
-                var parser = factory.createParser(response.body());
-                var jsonTree = mapper.readTree(parser);
+        return recorded("encrypt", properties, () -> encryptIncrementally(properties, previous));
+    }
 
-                if (null != jsonTree && null != jsonTree.get(JSON_DATA_FIELD)) {
-                    var jsonData = (JsonNode) jsonTree.get(JSON_DATA_FIELD);
+    @Override
+    public CompletableFuture<Properties> rewrapAsync(Properties properties) {
+        return recorded("rewrap", properties, () -> rewrapProperties(properties));
+    }
 
-                    if (jsonData.isObject() && null != jsonData.get(outputFieldName)) {
-                        var ciphertext = jsonData.get(outputFieldName).asText();
+    /**
+     * Records the properties operation as a flight recorder event, when enabled.
+     */
+    private <T> CompletableFuture<T> recorded(String operation, Properties properties, Supplier<CompletableFuture<T>> call) {
+        var event = new VaultPropertiesEvent();
 
-                        return ciphertext.toCharArray();
-                    }
+        if (!event.isEnabled()) {
+            return call.get();
+        }
+
+        event.begin();
+
+        var result = call.get();
+
+        result.whenComplete((value, throwable) -> {
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.transitPath = this.transitPath;
+                event.keyName = this.transitKeyName;
+                event.properties = properties.size();
+
+                if (null != throwable) {
+                    var cause = throwable instanceof CompletionException && null != throwable.getCause() ? throwable.getCause() : throwable;
+                    event.failure = String.valueOf(cause.getMessage());
                 }
 
-                throw new VaultException("Vault returned unexpected body structure");
-            } else {
-                throw new VaultException("Vault was unable to handle request, returned statusCode: " + response.statusCode());
+                event.commit();
             }
-        } catch (IOException | InterruptedException e) {
-            throw new VaultException("Unable to communicate with Vault", e);
+        });
+
+        return result;
+    }
+
+    private CompletableFuture<Void> validateProperties(Properties properties) {
+        try {
+            return validateGruntrHeader(properties);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
     }
 
-    @Override
-    public Properties decrypt(Properties properties) throws VaultException {
-        validateGruntrSha(properties);
+    private CompletableFuture<Properties> decryptProperties(Properties properties) {
+        CompletableFuture<Void> validation;
+
+        try {
+            validation = validateGruntrHeader(properties);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
         var decryptedProperties = new Properties();
+        var ciphertexts = new LinkedHashMap<String, byte[]>();
+        var envelopeCiphertexts = new LinkedHashMap<String, String>();
 
         properties.forEach((key, val) -> {
             if (val instanceof String) {
@@ -147,11 +1268,9 @@ public final class VaultTransitRestClientImpl implements VaultTransitRestClient
 
                 if (!keyName.toLowerCase().startsWith(GRUNTR__PREFIX)) {
                     if (stringValue.startsWith(VAULT_PREFIX)) {
-                        try {
-                            decryptedProperties.put(key, String.copyValueOf(decrypt(stringValue.toCharArray())));
-                        } catch (VaultException e) {
-                            throw new RuntimeException(e);
-                        }
+                        ciphertexts.put(keyName, stringValue.getBytes(StandardCharsets.UTF_8));
+                    } else if (stringValue.startsWith(EnvelopeCipher.PREFIX)) {
+                        envelopeCiphertexts.put(keyName, stringValue);
                     } else {
                         // non-encrypted value
                         decryptedProperties.put(key, val);
@@ -160,108 +1279,474 @@ public final class VaultTransitRestClientImpl implements VaultTransitRestClient
             }
         });
 
+        if (this.validateConcurrently) {
+            return decryptConcurrently(validation, properties, ciphertexts, envelopeCiphertexts, decryptedProperties);
+        }
+
+        var inFlight = new AtomicReference<CompletableFuture<?>>(validation);
+        var result = validation
+                .thenCompose(ignored -> {
+                    var plaintexts = decryptValues(properties, ciphertexts, envelopeCiphertexts, validation);
+                    inFlight.set(plaintexts);
+
+                    return plaintexts;
+                })
+                .thenApply(plaintexts -> toProperties(plaintexts, decryptedProperties));
+
+        return propagateCancellation(result, inFlight);
+    }
+
+    /**
+     * Decrypts the values while the header is being validated. The plaintexts are only released once the validation
+     * succeeded, when it fails (or the result is cancelled) the requests still in flight are cancelled and the
+     * plaintexts that did arrive are wiped.
+     */
+    private CompletableFuture<Properties> decryptConcurrently(CompletableFuture<Void> validation,
+                                                              Properties properties,
+                                                              Map<String, byte[]> ciphertexts,
+                                                              Map<String, String> envelopeCiphertexts,
+                                                              Properties decryptedProperties) {
+        var plaintexts = decryptValues(properties, ciphertexts, envelopeCiphertexts, validation);
+        var result = validation.thenCombine(plaintexts, (ignored, values) -> toProperties(values, decryptedProperties));
+
+        validation.whenComplete((ignored, throwable) -> {
+            if (null != throwable) {
+                discard(plaintexts);
+            }
+        });
+
+        result.whenComplete((value, throwable) -> {
+            if (null != throwable) {
+                validation.cancel(true);
+                discard(plaintexts);
+            }
+        });
+
+        return result;
+    }
+
+    private static void discard(CompletableFuture<Map<String, char[]>> plaintexts) {
+        plaintexts.cancel(true);
+        plaintexts.thenAccept(values -> values.values().forEach(value -> Arrays.fill(value, '\0')));
+    }
+
+    /**
+     * Decrypts the values encrypted by Vault and the values encrypted with a data key, at the same time.
+     *
+     * @param validation the validation of the header, see {@link #decryptAll(Map, CompletableFuture)}
+     */
+    private CompletableFuture<Map<String, char[]>> decryptValues(Properties properties, Map<String, byte[]> ciphertexts, Map<String, String> envelopeCiphertexts,
+                                                              CompletableFuture<Void> validation) {
+        var remote = decryptAll(ciphertexts, validation);
+        var local = decryptLocally(properties.getProperty(GRUNTR__DATA_KEY), envelopeCiphertexts);
+        var plaintexts = remote.thenCombine(local, (remoteValues, localValues) -> {
+            remoteValues.putAll(localValues);
+
+            return remoteValues;
+        });
+
+        // when only one of both succeeded, its plaintexts are no longer needed
+        plaintexts.whenComplete((values, throwable) -> {
+            if (null != throwable) {
+                discard(remote);
+                discard(local);
+            }
+        });
+
+        return propagateCancellation(propagateCancellation(plaintexts, remote), local);
+    }
+
+    private static Properties toProperties(Map<String, char[]> plaintexts, Properties decryptedProperties) {
+        plaintexts.forEach((key, value) -> {
+            decryptedProperties.put(key, String.copyValueOf(value));
+            Arrays.fill(value, '\0');
+        });
+
         return decryptedProperties;
     }
 
-    @Override
-    public Properties encrypt(Properties properties) throws VaultException {
-        var keysToEncrypt = EncryptionKeys.compile();
+    private CompletableFuture<Properties> encryptProperties(Properties properties) {
         var encryptedProperties = new Properties();
+        var plaintexts = collectPlaintexts(properties, encryptedProperties);
+
+        var ciphertexts = encryptValues(plaintexts, encryptedProperties, envelopeDataKey(encryptedProperties));
+        ciphertexts.whenComplete((values, throwable) -> plaintexts.values().forEach(value -> Arrays.fill(value, (byte) 0)));
+
+        var inFlight = new AtomicReference<CompletableFuture<?>>(ciphertexts);
+        var result = ciphertexts
+                .thenCompose(values -> {
+                    values.forEach((key, ciphertext) -> encryptedProperties.put(key, String.copyValueOf(ciphertext)));
+
+                    var hash = appendGruntrHash(encryptedProperties);
+                    inFlight.set(hash);
+
+                    return hash;
+                })
+                .thenApply(ignored -> encryptedProperties);
+
+        return propagateCancellation(result, inFlight);
+    }
+
+    /**
+     * Sorts the properties into the values to encrypt, returned by property key, and the values that are copied to
+     * the encrypted properties as is. Values that are encrypted already, by Vault or with envelope encryption, and the
+     * {@code gruntr__} headers are copied as well, encrypting them again would only hide the ciphertext.
+     */
+    private static Map<String, byte[]> collectPlaintexts(Properties properties, Properties encryptedProperties) {
+        var keysToEncrypt = EncryptionKeys.compile();
+        var plaintexts = new LinkedHashMap<String, byte[]>();
 
         properties.forEach((key, value) -> {
-            try {
-                // the property key matches the keys required to be encrypted
-                var keyName = (String) key;
-                var stringValue = (String) value;
-
-                if (keysToEncrypt.matcher(keyName).find()) {
-                    encryptedProperties.put(
-                            key,
-                            String.copyValueOf(
-                                    encrypt(stringValue.getBytes())
-                            )
-                    );
+            // the property key matches the keys required to be encrypted
+            var keyName = (String) key;
+            var stringValue = (String) value;
+
+            if (keysToEncrypt.matcher(keyName).find()
+                    && !keyName.toLowerCase().startsWith(GRUNTR__PREFIX)
+                    && !isEncrypted(stringValue)) {
+                plaintexts.put(keyName, stringValue.getBytes());
+            } else {
+                // there is no need to encrypt this key
+                encryptedProperties.put(keyName, stringValue);
+            }
+        });
+
+        return plaintexts;
+    }
+
+    private static boolean isEncrypted(String value) {
+        var trimmed = value.trim();
+
+        return trimmed.startsWith(VAULT_PREFIX) || trimmed.startsWith(EnvelopeCipher.PREFIX);
+    }
+
+    /**
+     * @return the wrapped data key of the envelope encrypted values that are copied as is, null when there are none.
+     * New values are encrypted with the same data key, as the properties can only hold one.
+     */
+    private static String envelopeDataKey(Properties encryptedProperties) {
+        var copiesEnvelopeValues = encryptedProperties.values().stream()
+                .anyMatch(value -> ((String) value).trim().startsWith(EnvelopeCipher.PREFIX));
+
+        return copiesEnvelopeValues ? encryptedProperties.getProperty(GRUNTR__DATA_KEY) : null;
+    }
+
+    /**
+     * @param wrappedDataKey the data key to encrypt with in envelope mode, null to generate a new one
+     */
+    private CompletableFuture<Map<String, char[]>> encryptValues(Map<String, byte[]> plaintexts, Properties encryptedProperties, String wrappedDataKey) {
+        return this.envelopeEncryption
+                ? encryptLocally(plaintexts, encryptedProperties, wrappedDataKey)
+                : requestAll(VaultTransitEndpoint.ENCRYPT, plaintexts);
+    }
+
+    /**
+     * Computes the HMAC of every value to encrypt, and only encrypts the values whose HMAC differs from the one in
+     * the previous output. The other values keep their previous ciphertext. With envelope encryption, the changed
+     * values are encrypted with the data key of the previous output, so the unchanged values stay valid. The header
+     * hash is reused as well when the previous output was encrypted with the same Vault host, transit path and key.
+     */
+    private CompletableFuture<Properties> encryptIncrementally(Properties properties, Properties previous) {
+        var encryptedProperties = new Properties();
+        var plaintexts = collectPlaintexts(properties, encryptedProperties);
+        var sameKey = this.host.toExternalForm().equals(previous.getProperty(GRUNTR__VAULT_HOST))
+                && this.transitPath.equals(previous.getProperty(GRUNTR__VAULT_TRANSIT_PATH))
+                && this.transitKeyName.equals(previous.getProperty(GRUNTR__VAULT_TRANSIT_KEY));
+
+        // envelope values that are copied as is dictate the data key, previous values are only reused with that key
+        var previousDataKey = sameKey ? previous.getProperty(GRUNTR__DATA_KEY) : null;
+        var copiedDataKey = envelopeDataKey(encryptedProperties);
+        var dataKey = null == copiedDataKey ? previousDataKey : copiedDataKey;
+        var reuse = sameKey && (!this.envelopeEncryption || (null != dataKey && dataKey.equals(previousDataKey)));
+
+        var inputs = hmacInputs(plaintexts);
+        var hmacs = requestAll(VaultTransitEndpoint.HMAC, inputs);
+        hmacs.whenComplete((values, throwable) -> inputs.values().forEach(value -> Arrays.fill(value, (byte) 0)));
+
+        var inFlight = new AtomicReference<CompletableFuture<?>>(hmacs);
+        var ciphertexts = hmacs.thenCompose(values -> {
+            var changed = new LinkedHashMap<String, byte[]>();
+            var ciphertextPrefix = this.envelopeEncryption ? EnvelopeCipher.PREFIX : VAULT_PREFIX;
+
+            plaintexts.forEach((key, plaintext) -> {
+                var hmac = String.copyValueOf(values.get(key));
+                var previousCiphertext = previous.getProperty(key);
+
+                encryptedProperties.put(GRUNTR__VALUE_HMAC_PREFIX + key, hmac);
+
+                if (reuse && hmac.equals(previous.getProperty(GRUNTR__VALUE_HMAC_PREFIX + key))
+                        && null != previousCiphertext && previousCiphertext.trim().startsWith(ciphertextPrefix)) {
+                    encryptedProperties.put(key, previousCiphertext);
                 } else {
-                    // there is no need to encrypt this key
-                    encryptedProperties.put(keyName, stringValue);
+                    changed.put(key, plaintext);
                 }
-            } catch (VaultException e) {
-                throw new RuntimeException(e);
+            });
+
+            if (this.envelopeEncryption && null != dataKey) {
+                encryptedProperties.put(GRUNTR__DATA_KEY, dataKey);
+            }
+
+            if (changed.isEmpty()) {
+                return CompletableFuture.completedFuture(Map.<String, char[]>of());
+            }
+
+            var encrypted = encryptValues(changed, encryptedProperties, dataKey);
+            inFlight.set(encrypted);
+
+            return encrypted;
+        });
+        ciphertexts.whenComplete((values, throwable) -> plaintexts.values().forEach(value -> Arrays.fill(value, (byte) 0)));
+
+        var result = ciphertexts
+                .thenCompose(values -> {
+                    values.forEach((key, ciphertext) -> encryptedProperties.put(key, String.copyValueOf(ciphertext)));
+
+                    var header = IntegrityMode.HMAC == this.integrityMode ? GRUNTR__HMAC : GRUNTR__SHA_3;
+                    var previousHash = previous.getProperty(header);
+
+                    if (sameKey && null != previousHash) {
+                        encryptedProperties.put(GRUNTR__VAULT_HOST, this.host.toExternalForm());
+                        encryptedProperties.put(GRUNTR__VAULT_TRANSIT_PATH, this.transitPath);
+                        encryptedProperties.put(GRUNTR__VAULT_TRANSIT_KEY, this.transitKeyName);
+                        encryptedProperties.put(header, previousHash);
+
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+
+                    var hash = appendGruntrHash(encryptedProperties);
+                    inFlight.set(hash);
+
+                    return hash;
+                })
+                .thenApply(ignored -> encryptedProperties);
+
+        return propagateCancellation(result, inFlight);
+    }
+
+    /**
+     * @return the HMAC input of every value: its property key and value, so that a ciphertext cannot be reused for
+     * another key holding a different value
+     */
+    private static Map<String, byte[]> hmacInputs(Map<String, byte[]> plaintexts) {
+        var inputs = new LinkedHashMap<String, byte[]>(plaintexts.size());
+
+        plaintexts.forEach((key, plaintext) -> {
+            var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            var input = new byte[keyBytes.length + 1 + plaintext.length];
+
+            System.arraycopy(keyBytes, 0, input, 0, keyBytes.length);
+            System.arraycopy(plaintext, 0, input, keyBytes.length + 1, plaintext.length);
+            inputs.put(key, input);
+        });
+
+        return inputs;
+    }
+
+    private CompletableFuture<Properties> rewrapProperties(Properties properties) {
+        CompletableFuture<Void> validation;
+
+        try {
+            validation = validateGruntrHeader(properties);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        var encryptedProperties = new Properties();
+        var ciphertexts = new LinkedHashMap<String, byte[]>();
+
+        properties.forEach((key, val) -> {
+            var stringValue = ((String) val).trim();
+            var keyName = (String) key;
+
+            // rewrapping the data key is enough for the values encrypted with it
+            if ((GRUNTR__DATA_KEY.equals(keyName) || !keyName.toLowerCase().startsWith(GRUNTR__PREFIX)) && stringValue.startsWith(VAULT_PREFIX)) {
+                ciphertexts.put(keyName, stringValue.getBytes(StandardCharsets.UTF_8));
+            } else {
+                encryptedProperties.put(key, stringValue);
+            }
+        });
+
+        var inFlight = new AtomicReference<CompletableFuture<?>>(validation);
+        var result = validation
+                .thenCompose(ignored -> {
+                    if (!this.rewrapOnlyStale) {
+                        return CompletableFuture.completedFuture(ciphertexts);
+                    }
+
+                    var key = readKey();
+                    inFlight.set(key);
+
+                    return key.handle((transitKey, throwable) -> {
+                        if (null == throwable) {
+                            return staleCiphertexts(transitKey, ciphertexts, encryptedProperties);
+                        }
+
+                        var failure = toVaultException(throwable);
+
+                        if (403 == failure.getStatusCode()) {
+                            // the token may rewrap but not read the key, all values are rewrapped
+                            return ciphertexts;
+                        }
+
+                        throw new CompletionException(failure);
+                    });
+                })
+                .thenCompose(stale -> {
+                    var rewrapped = requestAll(VaultTransitEndpoint.REWRAP, stale);
+                    inFlight.set(rewrapped);
+
+                    return rewrapped;
+                })
+                .thenApply(rewrapped -> {
+                    rewrapped.forEach((key, ciphertext) -> encryptedProperties.put(key, String.copyValueOf(ciphertext)));
+
+                    return encryptedProperties;
+                });
+
+        return propagateCancellation(result, inFlight);
+    }
+
+    /**
+     * Keeps the ciphertexts that are not encrypted with the latest key version, the others are copied as is to the
+     * result. Ciphertexts of a version below the minimum decryption version can no longer be rewrapped.
+     */
+    private static Map<String, byte[]> staleCiphertexts(VaultTransitKey transitKey, Map<String, byte[]> ciphertexts, Properties encryptedProperties) {
+        var stale = new LinkedHashMap<String, byte[]>();
+
+        ciphertexts.forEach((key, ciphertext) -> {
+            var value = new String(ciphertext, StandardCharsets.UTF_8);
+
+            if (transitKey.isCurrent(value)) {
+                encryptedProperties.put(key, value);
+            } else if (transitKey.isDecryptable(value)) {
+                stale.put(key, ciphertext);
+            } else {
+                throw new CompletionException(new VaultException("Vault is unable to rewrap property '" + key
+                        + "', encrypted with key version " + VaultTransitKey.versionOf(value)
+                        + " while the minimum decryption version is " + transitKey.getMinDecryptionVersion()));
             }
         });
 
-        appendGruntrHash(encryptedProperties);
+        return stale;
+    }
+
+    /**
+     * Same as {@link #propagateCancellation(CompletableFuture, CompletableFuture)}, for operations that consist of
+     * several consecutive steps: cancelling cancels the step that is in flight at that moment.
+     */
+    private static <T> CompletableFuture<T> propagateCancellation(CompletableFuture<T> dependent, AtomicReference<CompletableFuture<?>> inFlight) {
+        dependent.whenComplete((result, throwable) -> {
+            var current = inFlight.get();
 
-        return encryptedProperties;
+            if (dependent.isCancelled() && null != current) {
+                current.cancel(true);
+            }
+        });
+
+        return dependent;
     }
 
-    private void appendGruntrHash(Properties properties) {
+    private CompletableFuture<Void> appendGruntrHash(Properties properties) {
         properties.put(GRUNTR__VAULT_HOST, this.host.toExternalForm());
         properties.put(GRUNTR__VAULT_TRANSIT_PATH, this.transitPath);
         properties.put(GRUNTR__VAULT_TRANSIT_KEY, this.transitKeyName);
-        properties.put(GRUNTR__SHA_3, String.copyValueOf(createHash()));
+
+        var hash = createHash();
+        var header = IntegrityMode.HMAC == this.integrityMode ? GRUNTR__HMAC : GRUNTR__SHA_3;
+
+        return propagateCancellation(hash.thenAccept(value -> properties.put(header, String.copyValueOf(value))), hash);
     }
 
-    private void validateGruntrSha(Properties properties) throws VaultException {
-        var vaultTransitKey = requireNonNull(properties.getProperty(GRUNTR__VAULT_TRANSIT_KEY), "Cannot validate hash, missing Vault Transit Key");
-        var vaultHost = requireNonNull(properties.getProperty(GRUNTR__VAULT_HOST), "Cannot validate hash, missing Vault host");
-        var vaultTransitPath = requireNonNull(properties.getProperty(GRUNTR__VAULT_TRANSIT_PATH), "Cannot validate hash, missing Vault Transit Path");
-        var gruntrSha3Value = requireNonNull(properties.getProperty(GRUNTR__SHA_3), "Cannot validate hash, missing Vault SHA3 value");
+    /**
+     * Validates the {@code gruntr__} header with the HMAC when present, with the SHA3 hash otherwise. A header that
+     * was validated once is not validated again for the lifetime of this client.
+     *
+     * @throws NullPointerException when one of the {@code gruntr__} values is missing
+     */
+    private CompletableFuture<Void> validateGruntrHeader(Properties properties) {
+        var hmac = properties.getProperty(GRUNTR__HMAC);
+        var header = null == hmac ? GRUNTR__SHA_3 : GRUNTR__HMAC;
+        var description = null == hmac ? "hash" : "hmac";
 
-        try {
-            var sha3HexValue = this.decrypt(gruntrSha3Value.toCharArray());
-            var recomputedSha3HexValue = ArrayUtils.toCharArray(DigestUtils.sha3digest(vaultHost, vaultTransitPath, vaultTransitKey));
+        var vaultTransitKey = requireNonNull(properties.getProperty(GRUNTR__VAULT_TRANSIT_KEY), "Cannot validate " + description + ", missing Vault Transit Key");
+        var vaultHost = requireNonNull(properties.getProperty(GRUNTR__VAULT_HOST), "Cannot validate " + description + ", missing Vault host");
+        var vaultTransitPath = requireNonNull(properties.getProperty(GRUNTR__VAULT_TRANSIT_PATH), "Cannot validate " + description + ", missing Vault Transit Path");
+        var value = null == hmac
+                ? requireNonNull(properties.getProperty(GRUNTR__SHA_3), "Cannot validate hash, missing Vault SHA3 value")
+                : hmac;
+
+        var validatedHeader = DecryptionCache.key(vaultHost, vaultTransitPath, vaultTransitKey, (header + '|' + value).toCharArray());
+
+        if (validatedHeaders.contains(validatedHeader)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        var validation = null == hmac
+                ? validateGruntrSha(vaultHost, vaultTransitPath, vaultTransitKey, value)
+                : validateGruntrHmac(vaultHost, vaultTransitPath, vaultTransitKey, value);
+
+        return propagateCancellation(validation.thenRun(() -> validatedHeaders.add(validatedHeader)), validation);
+    }
 
-            if (!Arrays.equals(sha3HexValue, recomputedSha3HexValue)) {
-                throw new IllegalStateException("Hash validation failed, gruntr__ values were tampered with?");
+    private CompletableFuture<Void> validateGruntrSha(String vaultHost, String vaultTransitPath, String vaultTransitKey, String gruntrSha3Value) {
+        var sha3HexValue = this.decryptAsync(gruntrSha3Value.toCharArray());
+
+        return propagateCancellation(sha3HexValue.thenAccept(value -> {
+            try {
+                var recomputedSha3HexValue = ArrayUtils.toCharArray(DigestUtils.sha3digest(vaultHost, vaultTransitPath, vaultTransitKey));
+
+                if (!Arrays.equals(value, recomputedSha3HexValue)) {
+                    throw new IllegalStateException("Hash validation failed, gruntr__ values were tampered with?");
+                }
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
             }
+        }), sha3HexValue);
+    }
+
+    private CompletableFuture<Void> validateGruntrHmac(String vaultHost, String vaultTransitPath, String vaultTransitKey, String gruntrHmacValue) {
+        byte[] data;
+
+        try {
+            data = codec.writeVerifyRequest(DigestUtils.sha3digest(vaultHost, vaultTransitPath, vaultTransitKey), gruntrHmacValue.toCharArray());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new VaultException("Unable to create the Vault request", e));
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
+
+        var response = send(VaultTransitEndpoint.VERIFY, data, 1, codec::readVerifyResponse);
+
+        return propagateCancellation(response.thenAccept(valid -> {
+            if (!valid) {
+                throw new IllegalStateException("HMAC validation failed, gruntr__ values were tampered with?");
+            }
+        }), response);
     }
 
-    private char[] createHash() {
+    private CompletableFuture<char[]> createHash() {
         try {
-            return encrypt(
-                    DigestUtils.sha3digest(host.toExternalForm(), transitPath, transitKeyName)
-            );
-        } catch (VaultException | NoSuchAlgorithmException e) {
+            var digest = DigestUtils.sha3digest(host.toExternalForm(), transitPath, transitKeyName);
+
+            return IntegrityMode.HMAC == this.integrityMode
+                    ? request(VaultTransitEndpoint.HMAC, digest)
+                    : encryptAsync(digest);
+        } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
     }
 
     @Override
-    public Properties rewrap(Properties properties) throws VaultException {
-        validateGruntrSha(properties);
-
-        var encryptedProperties = new Properties();
-
-        properties.forEach((key, val) -> {
-            var stringValue = ((String) val).trim();
-            var keyName = (String) key;
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            // the executor would otherwise be shut down under the requests that are in flight, leaving them hanging
+            pendingRequests.forEach(VaultTransitRestClientImpl::abort);
 
-            if (!keyName.toLowerCase().startsWith(GRUNTR__PREFIX)) {
-                if (stringValue.startsWith(VAULT_PREFIX)) {
-                    try {
-                        encryptedProperties.put(
-                                key,
-                                String.copyValueOf(
-                                        rewrap(
-                                                stringValue.toCharArray()
-                                        )
-                                )
-                        );
-                    } catch (VaultException e) {
-                        throw new RuntimeException(e);
-                    }
-                } else {
-                    encryptedProperties.put(key, stringValue);
-                }
-            } else {
-                encryptedProperties.put(key, stringValue);
+            if (null != this.ownedExecutor) {
+                this.ownedExecutor.shutdown();
             }
-        });
 
-        return encryptedProperties;
+            this.token.invalidate();
+        }
     }
 }
@@ -17,11 +17,31 @@
 package io.acuz.gruntr.vault.exception;
 
 public final class VaultException extends Exception {
+    private final int statusCode;
+
     public VaultException(String message, Exception e) {
         super(message, e);
+
+        this.statusCode = 0;
     }
 
     public VaultException(String message) {
+        this(message, 0);
+    }
+
+    /**
+     * @param statusCode the HTTP status code Vault answered with
+     */
+    public VaultException(String message, int statusCode) {
         super(message);
+
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return the HTTP status code Vault answered with, 0 when the failure is not about a response of Vault
+     */
+    public int getStatusCode() {
+        return statusCode;
     }
 }
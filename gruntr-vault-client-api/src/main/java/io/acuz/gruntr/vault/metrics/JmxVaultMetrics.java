@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics listener publishing one MBean per transit operation, named
+ * {@code io.acuz.gruntr:type=VaultMetrics,name="<name>",operation="<operation>"}, on the platform MBean server. The
+ * MBean of an operation is registered on its first call. Closing the listener unregisters them.
+ */
+public final class JmxVaultMetrics implements VaultMetricsListener, AutoCloseable {
+    private static final String DOMAIN = "io.acuz.gruntr";
+
+    private final String name;
+    private final MBeanServer server;
+    private final Map<String, VaultOperationMetrics> operations = new ConcurrentHashMap<>();
+    private final Set<ObjectName> registered = ConcurrentHashMap.newKeySet();
+
+    private JmxVaultMetrics(String name, MBeanServer server) {
+        this.name = name;
+        this.server = server;
+    }
+
+    /**
+     * @param name distinguishes the metrics of several clients in the same JVM, e.g. the name of the application
+     */
+    public static JmxVaultMetrics create(String name) {
+        Objects.requireNonNull(name, "Name should not be null");
+
+        return new JmxVaultMetrics(name, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    @Override
+    public void onResponse(String operation, int batchSize, int bytesOut, int bytesIn, int statusCode, long latencyNanos) {
+        metricsOf(operation).recordResponse(batchSize, bytesOut, bytesIn, statusCode, latencyNanos);
+    }
+
+    @Override
+    public void onFailure(String operation, int batchSize, int bytesOut, Throwable cause, long latencyNanos) {
+        metricsOf(operation).recordFailure(batchSize, bytesOut, latencyNanos);
+    }
+
+    /**
+     * @return the metrics of the operation, null if it was never called
+     */
+    public VaultOperationMetricsMBean get(String operation) {
+        return operations.get(operation);
+    }
+
+    private VaultOperationMetrics metricsOf(String operation) {
+        var metrics = operations.get(operation);
+
+        return null == metrics ? operations.computeIfAbsent(operation, this::register) : metrics;
+    }
+
+    private VaultOperationMetrics register(String operation) {
+        var metrics = new VaultOperationMetrics(operation);
+
+        try {
+            var objectName = objectName(operation);
+
+            server.registerMBean(metrics, objectName);
+            registered.add(objectName);
+        } catch (InstanceAlreadyExistsException ignored) {
+            // another listener with the same name registered first, this one still counts
+        } catch (MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException e) {
+            throw new IllegalStateException("Unable to register the metrics of " + operation, e);
+        }
+
+        return metrics;
+    }
+
+    private ObjectName objectName(String operation) throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":type=VaultMetrics,name=" + ObjectName.quote(name) + ",operation=" + ObjectName.quote(operation));
+    }
+
+    @Override
+    public void close() {
+        registered.removeIf(objectName -> {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (InstanceNotFoundException | MBeanRegistrationException ignored) {
+                // already gone
+            }
+
+            return true;
+        });
+
+        operations.clear();
+    }
+}
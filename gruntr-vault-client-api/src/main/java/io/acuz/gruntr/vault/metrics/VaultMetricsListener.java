@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault.metrics;
+
+/**
+ * Receives a callback for every request the client sends to Vault, see
+ * {@link io.acuz.gruntr.vault.VaultTransitRestClient.Builder#metricsListener(VaultMetricsListener)}.
+ * <p>
+ * Callbacks run on the threads completing the HTTP exchanges, concurrently, and should return quickly: they are on the
+ * path of every call. Exceptions thrown by a listener are ignored.
+ */
+public interface VaultMetricsListener {
+    /**
+     * The default listener, doing nothing.
+     */
+    VaultMetricsListener NOOP = new VaultMetricsListener() {
+        @Override
+        public void onResponse(String operation, int batchSize, int bytesOut, int bytesIn, int statusCode, long latencyNanos) {
+        }
+
+        @Override
+        public void onFailure(String operation, int batchSize, int bytesOut, Throwable cause, long latencyNanos) {
+        }
+    };
+
+    /**
+     * Called when Vault answered a request, whatever the status code.
+     *
+     * @param operation    the transit operation, e.g. {@code decrypt}, {@code keys} or {@code datakey/plaintext}
+     * @param batchSize    the number of values in the request, 1 for a single value and 0 for a request without value
+     * @param bytesOut     the size of the request body
+     * @param bytesIn      the size of the response body
+     * @param statusCode   the HTTP status code of the response
+     * @param latencyNanos the time from sending the request to receiving the whole response
+     */
+    void onResponse(String operation, int batchSize, int bytesOut, int bytesIn, int statusCode, long latencyNanos);
+
+    /**
+     * Called when a request got no response: Vault could not be reached, the request timed out or was cancelled.
+     *
+     * @param operation    the transit operation
+     * @param batchSize    the number of values in the request
+     * @param bytesOut     the size of the request body
+     * @param cause        the reason of the failure
+     * @param latencyNanos the time from sending the request to the failure
+     */
+    void onFailure(String operation, int batchSize, int bytesOut, Throwable cause, long latencyNanos);
+}
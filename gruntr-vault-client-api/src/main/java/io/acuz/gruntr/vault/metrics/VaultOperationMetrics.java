@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram of one transit operation.
+ */
+public final class VaultOperationMetrics implements VaultOperationMetricsMBean {
+    private static final double NANOS_PER_MICRO = 1_000;
+
+    private final String operation;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder values = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder responses2xx = new LongAdder();
+    private final LongAdder responses4xx = new LongAdder();
+    private final LongAdder responses429 = new LongAdder();
+    private final LongAdder responses5xx = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    VaultOperationMetrics(String operation) {
+        this.operation = operation;
+    }
+
+    void recordResponse(int batchSize, int bytesOut, int bytesIn, int statusCode, long latencyNanos) {
+        record(batchSize, bytesOut, latencyNanos);
+        this.bytesIn.add(bytesIn);
+
+        if (429 == statusCode) {
+            responses429.increment();
+        } else if (statusCode >= 500) {
+            responses5xx.increment();
+        } else if (statusCode >= 400) {
+            responses4xx.increment();
+        } else if (statusCode >= 200 && statusCode < 300) {
+            responses2xx.increment();
+        }
+    }
+
+    void recordFailure(int batchSize, int bytesOut, long latencyNanos) {
+        record(batchSize, bytesOut, latencyNanos);
+        failures.increment();
+    }
+
+    private void record(int batchSize, int bytesOut, long latencyNanos) {
+        calls.increment();
+        values.add(batchSize);
+        this.bytesOut.add(bytesOut);
+        latency.record(latencyNanos);
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getValues() {
+        return values.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getResponses2xx() {
+        return responses2xx.sum();
+    }
+
+    @Override
+    public long getResponses4xx() {
+        return responses4xx.sum();
+    }
+
+    @Override
+    public long getResponses429() {
+        return responses429.sum();
+    }
+
+    @Override
+    public long getResponses5xx() {
+        return responses5xx.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public double getLatencyMean() {
+        return latency.getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getLatencyP50() {
+        return latency.getValueAtPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getLatencyP90() {
+        return latency.getValueAtPercentile(90) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getLatencyP99() {
+        return latency.getValueAtPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getLatencyP999() {
+        return latency.getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getLatencyMax() {
+        return latency.getMax() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        values.reset();
+        bytesOut.reset();
+        bytesIn.reset();
+        responses2xx.reset();
+        responses4xx.reset();
+        responses429.reset();
+        responses5xx.reset();
+        failures.reset();
+        latency.reset();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault.metrics;
+
+/**
+ * Metrics of one transit operation, as exposed over JMX by {@link JmxVaultMetrics}. Latencies are in microseconds.
+ */
+public interface VaultOperationMetricsMBean {
+    String getOperation();
+
+    /**
+     * @return the number of requests that were answered or failed
+     */
+    long getCalls();
+
+    /**
+     * @return the number of values sent, a batch request counts for all its values
+     */
+    long getValues();
+
+    long getBytesOut();
+
+    long getBytesIn();
+
+    long getResponses2xx();
+
+    long getResponses4xx();
+
+    /**
+     * @return the number of requests throttled by Vault (status 429), these are not counted as 4xx
+     */
+    long getResponses429();
+
+    long getResponses5xx();
+
+    /**
+     * @return the number of requests that got no response
+     */
+    long getFailures();
+
+    double getLatencyMean();
+
+    double getLatencyP50();
+
+    double getLatencyP90();
+
+    double getLatencyP99();
+
+    double getLatencyP999();
+
+    double getLatencyMax();
+
+    void reset();
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault.model;
+
+/**
+ * The version metadata of a transit key, as returned by {@code GET /v1/<transit path>/keys/<key name>}.
+ */
+public final class VaultTransitKey {
+    private static final String VAULT_PREFIX = "vault:v";
+
+    private final int latestVersion;
+    private final int minDecryptionVersion;
+
+    private VaultTransitKey(int latestVersion, int minDecryptionVersion) {
+        this.latestVersion = latestVersion;
+        this.minDecryptionVersion = minDecryptionVersion;
+    }
+
+    public static VaultTransitKey of(int latestVersion, int minDecryptionVersion) {
+        if (latestVersion < 1 || minDecryptionVersion < 1 || minDecryptionVersion > latestVersion) {
+            throw new IllegalArgumentException("Invalid key versions, latest: " + latestVersion + ", min decryption: " + minDecryptionVersion);
+        }
+
+        return new VaultTransitKey(latestVersion, minDecryptionVersion);
+    }
+
+    /**
+     * Reads the key version from the {@code vault:v<version>:} prefix of a ciphertext, without copying it.
+     *
+     * @param ciphertext the ciphertext
+     * @return the key version, or -1 if the ciphertext has no valid prefix
+     */
+    public static int versionOf(CharSequence ciphertext) {
+        if (null == ciphertext || ciphertext.length() <= VAULT_PREFIX.length()) {
+            return -1;
+        }
+
+        for (int i = 0; i < VAULT_PREFIX.length(); i++) {
+            if (ciphertext.charAt(i) != VAULT_PREFIX.charAt(i)) {
+                return -1;
+            }
+        }
+
+        long version = 0;
+
+        for (int i = VAULT_PREFIX.length(); i < ciphertext.length(); i++) {
+            var c = ciphertext.charAt(i);
+
+            if (':' == c) {
+                return i == VAULT_PREFIX.length() ? -1 : (int) version;
+            }
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            version = version * 10 + (c - '0');
+
+            if (version > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    public int getLatestVersion() {
+        return latestVersion;
+    }
+
+    public int getMinDecryptionVersion() {
+        return minDecryptionVersion;
+    }
+
+    /**
+     * @return true if the ciphertext was encrypted with the latest version of the key, rewrapping it is a no-op
+     */
+    public boolean isCurrent(CharSequence ciphertext) {
+        return versionOf(ciphertext) >= latestVersion;
+    }
+
+    /**
+     * @return true if the ciphertext was encrypted with a version of the key that can still decrypt it
+     */
+    public boolean isDecryptable(CharSequence ciphertext) {
+        var version = versionOf(ciphertext);
+
+        return version >= minDecryptionVersion && version <= latestVersion;
+    }
+}
@@ -31,4 +31,14 @@ class ArrayUtilsTest {
 
         assertThrows(NullPointerException.class, () -> ArrayUtils.toCharArray(null));
     }
-}
\ No newline at end of file
+
+    @Test
+    void test_ToByteArray() {
+        var message = "vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==";
+        var bytes = ArrayUtils.toByteArray(message.toCharArray());
+
+        assertEquals(message, new String(bytes));
+
+        assertThrows(NullPointerException.class, () -> ArrayUtils.toByteArray(null));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedDispatcherTest {
+    @Test
+    void testDispatchKeepsAtMostLimitInFlight() throws ExecutionException, InterruptedException {
+        var pending = new ArrayList<CompletableFuture<Integer>>();
+        var tasks = new ArrayList<Supplier<CompletableFuture<Integer>>>();
+
+        for (int i = 0; i < 5; i++) {
+            tasks.add(() -> {
+                var future = new CompletableFuture<Integer>();
+                pending.add(future);
+
+                return future;
+            });
+        }
+
+        var result = BoundedDispatcher.dispatch(tasks, 2);
+        assertEquals(2, pending.size());
+
+        pending.get(1).complete(1);
+        assertEquals(3, pending.size());
+
+        pending.get(0).complete(0);
+        pending.get(2).complete(2);
+        assertEquals(5, pending.size());
+
+        pending.get(4).complete(4);
+        assertFalse(result.isDone());
+        pending.get(3).complete(3);
+
+        assertEquals(List.of(0, 1, 2, 3, 4), result.get());
+    }
+
+    @Test
+    void testDispatchCancelsInFlightOnFirstFailure() {
+        var pending = new ArrayList<CompletableFuture<Integer>>();
+        var tasks = new ArrayList<Supplier<CompletableFuture<Integer>>>();
+
+        for (int i = 0; i < 5; i++) {
+            tasks.add(() -> {
+                var future = new CompletableFuture<Integer>();
+                pending.add(future);
+
+                return future;
+            });
+        }
+
+        var result = BoundedDispatcher.dispatch(tasks, 3);
+        pending.get(1).completeExceptionally(new IllegalStateException("failed"));
+
+        var exception = assertThrows(ExecutionException.class, result::get);
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+        assertTrue(pending.get(0).isCancelled());
+        assertTrue(pending.get(2).isCancelled());
+        // the remaining tasks are never started
+        assertEquals(3, pending.size());
+    }
+
+    @Test
+    void testDispatchCancellationCancelsInFlight() {
+        var pending = new ArrayList<CompletableFuture<Integer>>();
+        var tasks = new ArrayList<Supplier<CompletableFuture<Integer>>>();
+
+        for (int i = 0; i < 2; i++) {
+            tasks.add(() -> {
+                var future = new CompletableFuture<Integer>();
+                pending.add(future);
+
+                return future;
+            });
+        }
+
+        var result = BoundedDispatcher.dispatch(tasks, 2);
+        result.cancel(true);
+
+        assertTrue(pending.get(0).isCancelled());
+        assertTrue(pending.get(1).isCancelled());
+    }
+}
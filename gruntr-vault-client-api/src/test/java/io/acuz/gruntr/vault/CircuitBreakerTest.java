@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        var breaker = CircuitBreaker.builder().failureThreshold(3).build();
+
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void testLetsOneProbeThroughAfterTheOpenDuration() {
+        var now = new AtomicLong(1_000);
+        var breaker = CircuitBreaker.builder()
+                .failureThreshold(1)
+                .openDuration(Duration.ofNanos(100))
+                .clock(now::get)
+                .build();
+
+        breaker.onFailure();
+        now.addAndGet(99);
+        assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(1);
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // the probe failed
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(100);
+        assertTrue(breaker.tryAcquire());
+
+        // the probe succeeded
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testLetsAnotherProbeThroughWhenOneNeverReportedBack() {
+        var now = new AtomicLong(1_000);
+        var breaker = CircuitBreaker.builder()
+                .failureThreshold(1)
+                .openDuration(Duration.ofNanos(100))
+                .clock(now::get)
+                .build();
+
+        breaker.onFailure();
+        now.addAndGet(100);
+        assertTrue(breaker.tryAcquire());
+
+        now.addAndGet(100);
+        assertTrue(breaker.tryAcquire());
+    }
+}
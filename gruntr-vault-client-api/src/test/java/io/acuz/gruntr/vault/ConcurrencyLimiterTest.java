@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    void testIncreasesAdditively() {
+        var limiter = ConcurrencyLimiter.builder().initialLimit(2).initialBatchSize(5).build();
+
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+            limiter.onSuccess(10 * MILLIS, limiter.getBatchSize());
+        }
+
+        assertEquals(3, limiter.getLimit());
+        assertEquals(9, limiter.getBatchSize());
+
+        // batches smaller than the batch size do not prove a bigger one works
+        limiter.acquire();
+        limiter.onSuccess(10 * MILLIS, 1);
+        assertEquals(9, limiter.getBatchSize());
+    }
+
+    @Test
+    void testBacksOffOncePerWindowOnOverload() {
+        var limiter = ConcurrencyLimiter.builder().initialLimit(8).initialBatchSize(100).build();
+
+        for (int i = 0; i < 8; i++) {
+            limiter.acquire();
+        }
+
+        for (int i = 0; i < 8; i++) {
+            limiter.onOverload();
+        }
+
+        assertEquals(4, limiter.getLimit());
+        assertEquals(50, limiter.getBatchSize());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testBacksOffWhenLatencyGrows() {
+        var limiter = ConcurrencyLimiter.builder().initialLimit(8).latencyTolerance(2).build();
+
+        limiter.acquire();
+        limiter.onSuccess(10 * MILLIS, 1);
+        var limit = limiter.getLimit();
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+            limiter.onSuccess(100 * MILLIS, 1);
+        }
+
+        assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    void testHoldsRequestsBeyondTheLimit() {
+        var limiter = ConcurrencyLimiter.builder().initialLimit(1).build();
+        var first = limiter.acquire();
+        var cancelled = limiter.acquire();
+        var second = limiter.acquire();
+
+        assertTrue(first.isDone());
+        assertFalse(cancelled.isDone());
+        assertFalse(second.isDone());
+
+        cancelled.cancel(false);
+        limiter.onCancel();
+
+        assertTrue(second.isDone());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void testRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> ConcurrencyLimiter.builder().minLimit(4).maxLimit(2).build());
+        assertThrows(IllegalArgumentException.class, () -> ConcurrencyLimiter.builder().backoffRatio(1).build());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DecryptionCacheTest {
+    @Test
+    void testCacheReturnsCopies() {
+        var cache = DecryptionCache.builder().build();
+        var plaintext = "my secret".toCharArray();
+
+        cache.put("key", plaintext);
+        plaintext[0] = 'x';
+
+        var cached = cache.get("key");
+        assertArrayEquals("my secret".toCharArray(), cached);
+        assertNotSame(cached, cache.get("key"));
+    }
+
+    @Test
+    void testCacheExpiresEntries() {
+        var now = new AtomicLong();
+        var cache = DecryptionCache.builder()
+                .timeToLive(Duration.ofNanos(100))
+                .clock(now::get)
+                .build();
+
+        cache.put("key", "my secret".toCharArray());
+        now.set(99);
+        assertArrayEquals("my secret".toCharArray(), cache.get("key"));
+
+        now.set(100);
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testCacheEvictsOldestEntries() {
+        var cache = DecryptionCache.builder()
+                .maximumEntries(2)
+                .build();
+
+        cache.put("first", "1".toCharArray());
+        cache.put("second", "2".toCharArray());
+        cache.put("third", "3".toCharArray());
+
+        assertNull(cache.get("first"));
+        assertArrayEquals("2".toCharArray(), cache.get("second"));
+        assertArrayEquals("3".toCharArray(), cache.get("third"));
+    }
+
+    @Test
+    void testCacheEvictsOnSize() {
+        var cache = DecryptionCache.builder()
+                .maximumSize(10)
+                .build();
+
+        cache.put("first", "12345".toCharArray());
+        cache.put("second", "12345".toCharArray());
+
+        assertNull(cache.get("first"));
+        assertArrayEquals("12345".toCharArray(), cache.get("second"));
+
+        // replacing an entry releases the size of the previous value
+        cache.put("second", "123".toCharArray());
+        assertArrayEquals("123".toCharArray(), cache.get("second"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testCacheInvalidateAll() {
+        var cache = DecryptionCache.builder().build();
+
+        cache.put("key", "my secret".toCharArray());
+        cache.invalidateAll();
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testCacheRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> DecryptionCache.builder().maximumEntries(0).build());
+        assertThrows(IllegalArgumentException.class, () -> DecryptionCache.builder().maximumSize(0).build());
+        assertThrows(IllegalArgumentException.class, () -> DecryptionCache.builder().timeToLive(Duration.ZERO).build());
+    }
+}
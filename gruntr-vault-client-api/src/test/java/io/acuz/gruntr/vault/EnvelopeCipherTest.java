@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import io.acuz.gruntr.vault.exception.VaultException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EnvelopeCipherTest {
+    private final byte[] key = new byte[32];
+
+    @Test
+    void testRoundTrip() throws VaultException {
+        var value = String.valueOf(EnvelopeCipher.encrypt(key, "my.secret", "my very secure value".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(value.startsWith("gruntr:v1:"));
+        assertEquals("my very secure value", new String(EnvelopeCipher.decrypt(key, "my.secret", value), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testEncryptUsesAFreshIv() throws VaultException {
+        var plaintext = "my very secure value".getBytes(StandardCharsets.UTF_8);
+
+        assertNotEquals(
+                String.valueOf(EnvelopeCipher.encrypt(key, "my.secret", plaintext)),
+                String.valueOf(EnvelopeCipher.encrypt(key, "my.secret", plaintext)));
+    }
+
+    @Test
+    void testValueIsBoundToItsPropertyKey() throws VaultException {
+        var value = String.valueOf(EnvelopeCipher.encrypt(key, "my.secret", "my very secure value".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(VaultException.class, () -> EnvelopeCipher.decrypt(key, "my.password", value));
+    }
+
+    @Test
+    void testRejectsTamperedOrMalformedValues() throws VaultException {
+        var value = String.valueOf(EnvelopeCipher.encrypt(key, "my.secret", "my very secure value".getBytes(StandardCharsets.UTF_8)));
+        var tampered = value.substring(0, value.length() - 4) + (value.endsWith("AAAA") ? "BBBB" : "AAAA");
+
+        assertThrows(VaultException.class, () -> EnvelopeCipher.decrypt(key, "my.secret", tampered));
+        assertThrows(VaultException.class, () -> EnvelopeCipher.decrypt(key, "my.secret", "gruntr:v1:AAAA"));
+        assertThrows(VaultException.class, () -> EnvelopeCipher.decrypt(key, "my.secret", "gruntr:v1:not base64!"));
+        assertThrows(VaultException.class, () -> EnvelopeCipher.decrypt(key, "my.secret", "gruntr:v9:AAAA"));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgingPolicyTest {
+    @Test
+    void testBudgetCapsTheHedges() {
+        var policy = HedgingPolicy.builder().budget(0.05).build();
+
+        // a burst of 10 hedges is saved up
+        for (int i = 0; i < 10; i++) {
+            policy.onRequest();
+            assertTrue(policy.tryAcquire());
+        }
+
+        policy.onRequest();
+        assertFalse(policy.tryAcquire());
+
+        // then one hedge per 20 requests
+        for (int i = 0; i < 19; i++) {
+            policy.onRequest();
+        }
+
+        assertTrue(policy.tryAcquire());
+        assertFalse(policy.tryAcquire());
+    }
+
+    @Test
+    void testDelayFollowsThePercentile() {
+        var policy = HedgingPolicy.builder()
+                .delay(Duration.ofMillis(50))
+                .percentile(95)
+                .build();
+
+        // the fixed delay is used until 32 latencies are known
+        for (int i = 1; i <= 31; i++) {
+            policy.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(Duration.ofMillis(50), policy.getDelay());
+
+        policy.record(TimeUnit.MILLISECONDS.toNanos(32));
+
+        assertEquals(Duration.ofMillis(31), policy.getDelay());
+
+        // then the delay is recomputed every 64 latencies
+        for (int i = 33; i <= 95; i++) {
+            policy.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(Duration.ofMillis(31), policy.getDelay());
+
+        policy.record(TimeUnit.MILLISECONDS.toNanos(96));
+
+        assertEquals(Duration.ofMillis(92), policy.getDelay());
+    }
+
+    @Test
+    void testFixedDelayIgnoresLatencies() {
+        var policy = HedgingPolicy.builder().delay(Duration.ofMillis(5)).build();
+
+        for (int i = 0; i < 1_000; i++) {
+            policy.record(TimeUnit.SECONDS.toNanos(1));
+        }
+
+        assertEquals(Duration.ofMillis(5), policy.getDelay());
+        assertThrows(IllegalArgumentException.class, () -> HedgingPolicy.builder().percentile(100).build());
+    }
+}
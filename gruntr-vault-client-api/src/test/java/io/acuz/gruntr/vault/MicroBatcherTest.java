@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import io.acuz.gruntr.vault.exception.VaultException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MicroBatcherTest {
+    private final List<Runnable> windows = new ArrayList<>();
+    private final List<List<byte[]>> batches = new ArrayList<>();
+
+    @Test
+    void testSendsTheValuesOfOneWindowTogether() throws Exception {
+        var batcher = new MicroBatcher(() -> 10, windows::add, this::upperCase);
+
+        var first = batcher.submit(bytes("a"));
+        var second = batcher.submit(bytes("b"));
+
+        assertFalse(first.isDone());
+        assertEquals(1, windows.size());
+
+        windows.get(0).run();
+
+        assertEquals(1, batches.size());
+        assertArrayEquals("A".toCharArray(), first.get());
+        assertArrayEquals("B".toCharArray(), second.get());
+    }
+
+    @Test
+    void testSendsAFullBatchRightAway() throws Exception {
+        var batcher = new MicroBatcher(() -> 2, windows::add, this::upperCase);
+
+        var first = batcher.submit(bytes("a"));
+        var second = batcher.submit(bytes("b"));
+        var third = batcher.submit(bytes("c"));
+
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+
+        // the window of the full batch has nothing left to send
+        windows.forEach(Runnable::run);
+
+        assertEquals(2, batches.size());
+        assertArrayEquals("C".toCharArray(), third.get());
+    }
+
+    @Test
+    void testFailsOnlyTheRejectedValue() throws Exception {
+        var batcher = new MicroBatcher(() -> 10, windows::add, this::upperCase);
+
+        var valid = batcher.submit(bytes("a"));
+        var invalid = batcher.submit(bytes("!"));
+        windows.get(0).run();
+
+        assertArrayEquals("A".toCharArray(), valid.get());
+
+        var exception = assertThrows(ExecutionException.class, invalid::get);
+        assertInstanceOf(VaultException.class, exception.getCause());
+    }
+
+    @Test
+    void testLeavesOutCancelledValues() throws Exception {
+        var batcher = new MicroBatcher(() -> 10, windows::add, this::upperCase);
+
+        var cancelled = batcher.submit(bytes("a"));
+        var kept = batcher.submit(bytes("b"));
+        cancelled.cancel(false);
+        windows.get(0).run();
+
+        assertEquals(1, batches.get(0).size());
+        assertArrayEquals("B".toCharArray(), kept.get());
+    }
+
+    private CompletableFuture<List<BatchItem>> upperCase(List<byte[]> values) {
+        batches.add(values);
+
+        var items = new ArrayList<BatchItem>();
+
+        values.forEach(value -> {
+            var text = new String(value, StandardCharsets.UTF_8);
+
+            items.add("!".equals(text)
+                    ? BatchItem.failure("invalid value")
+                    : BatchItem.success(text.toUpperCase().toCharArray()));
+        });
+
+        return CompletableFuture.completedFuture(items);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
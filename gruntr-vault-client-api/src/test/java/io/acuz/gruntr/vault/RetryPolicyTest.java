@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void testDelaysAreJitteredWithinBounds() {
+        var policy = RetryPolicy.builder()
+                .baseDelay(Duration.ofMillis(10))
+                .maxDelay(Duration.ofMillis(100))
+                .build();
+
+        var previous = 0L;
+
+        for (int i = 0; i < 1_000; i++) {
+            var delay = policy.nextDelayNanos(previous, 0);
+
+            assertTrue(delay >= 10 * MILLIS, "delay " + delay);
+            assertTrue(delay <= Math.min(100 * MILLIS, Math.max(10 * MILLIS, previous) * 3), "delay " + delay);
+
+            previous = delay;
+        }
+    }
+
+    @Test
+    void testRetryAfterRaisesTheDelayUpToTheMaximum() {
+        var policy = RetryPolicy.builder()
+                .baseDelay(Duration.ofMillis(10))
+                .maxDelay(Duration.ofSeconds(2))
+                .build();
+
+        assertEquals(TimeUnit.SECONDS.toNanos(1), policy.nextDelayNanos(0, TimeUnit.SECONDS.toNanos(1)), 30 * MILLIS);
+        assertEquals(TimeUnit.SECONDS.toNanos(2), policy.nextDelayNanos(0, TimeUnit.SECONDS.toNanos(60)));
+    }
+
+    @Test
+    void testRetryAfterHeader() {
+        var inTenSeconds = ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(10).format(DateTimeFormatter.RFC_1123_DATE_TIME);
+
+        assertEquals(TimeUnit.SECONDS.toNanos(3), RetryPolicy.retryAfterNanos("3"));
+        assertEquals(TimeUnit.SECONDS.toNanos(10), RetryPolicy.retryAfterNanos(inTenSeconds), TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0, RetryPolicy.retryAfterNanos("soon"));
+        assertEquals(0, RetryPolicy.retryAfterNanos(null));
+    }
+
+    @Test
+    void testRetryableFailures() {
+        var policy = RetryPolicy.builder().build();
+
+        assertTrue(policy.isRetryable(503));
+        assertTrue(policy.isRetryable(429));
+        assertFalse(policy.isRetryable(400));
+        assertFalse(policy.isRetryable(403));
+
+        assertTrue(RetryPolicy.isRetryable(new CompletionException(new ConnectException("connection refused"))));
+        assertTrue(RetryPolicy.isRetryable(new IOException("connection reset")));
+        assertTrue(RetryPolicy.isRetryable(new HttpConnectTimeoutException("connect timed out")));
+        assertTrue(RetryPolicy.isRetryable(new SocketException("Connection reset by peer")));
+        assertTrue(RetryPolicy.isRetryable(new IOException("HTTP/1.1 header parser received no bytes", new EOFException())));
+        assertFalse(RetryPolicy.isRetryable(new HttpTimeoutException("request timed out")));
+        assertFalse(RetryPolicy.isRetryable(new IllegalStateException()));
+    }
+
+    @Test
+    void testNonTransientIOExceptionsAreNotRetried() {
+        assertFalse(RetryPolicy.isRetryable(new SSLHandshakeException("PKIX path building failed")));
+        assertFalse(RetryPolicy.isRetryable(new CompletionException(new UnknownHostException("vault.invalid"))));
+        assertFalse(RetryPolicy.isRetryable(new IOException("too many concurrent streams")));
+    }
+
+    @Test
+    void testRetryableBatchItemErrors() {
+        assertTrue(RetryPolicy.isRetryable("internal error"));
+        assertTrue(RetryPolicy.isRetryable("context deadline exceeded"));
+        assertFalse(RetryPolicy.isRetryable("invalid ciphertext: no prefix"));
+        assertFalse(RetryPolicy.isRetryable("cipher: message authentication failed"));
+        assertFalse(RetryPolicy.isRetryable("ciphertext or signature version is disallowed by policy (too old)"));
+        assertFalse(RetryPolicy.isRetryable("unable to decode input as base64"));
+    }
+
+    @Test
+    void testNoneSendsOnce() {
+        assertFalse(RetryPolicy.none().canRetry(1));
+        assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().maxAttempts(0).build());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import io.acuz.gruntr.vault.exception.VaultException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Test
+    void testSharesTheRequestInFlight() throws Exception {
+        var response = new CompletableFuture<char[]>();
+
+        var first = singleFlight.execute("key", () -> send(response));
+        var second = singleFlight.execute("key", () -> send(response));
+        var plaintext = "secret".toCharArray();
+        response.complete(plaintext);
+
+        assertEquals(1, requests.get());
+        assertArrayEquals("secret".toCharArray(), first.get());
+        assertArrayEquals("secret".toCharArray(), second.get());
+        assertNotSame(first.get(), second.get());
+
+        // the shared plaintext is wiped, the callers own a copy
+        assertArrayEquals(new char[6], plaintext);
+        assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    void testForgetsTheKeyOnceCompleted() {
+        singleFlight.execute("key", () -> send(CompletableFuture.completedFuture("a".toCharArray())));
+        singleFlight.execute("key", () -> send(CompletableFuture.completedFuture("a".toCharArray())));
+
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testSharesTheFailure() {
+        var response = new CompletableFuture<char[]>();
+
+        var first = singleFlight.execute("key", () -> send(response));
+        var second = singleFlight.execute("key", () -> send(response));
+        response.completeExceptionally(new VaultException("failed"));
+
+        assertInstanceOf(VaultException.class, assertThrows(ExecutionException.class, first::get).getCause());
+        assertInstanceOf(VaultException.class, assertThrows(ExecutionException.class, second::get).getCause());
+    }
+
+    @Test
+    void testCancelsTheRequestOnceAllCallersCancelled() {
+        var response = new CompletableFuture<char[]>();
+
+        var first = singleFlight.execute("key", () -> send(response));
+        var second = singleFlight.execute("key", () -> send(response));
+
+        first.cancel(true);
+        assertFalse(response.isDone());
+
+        second.cancel(true);
+        assertTrue(response.isCancelled());
+        assertEquals(0, singleFlight.size());
+    }
+
+    private CompletableFuture<char[]> send(CompletableFuture<char[]> response) {
+        requests.incrementAndGet();
+
+        return response;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import io.acuz.gruntr.vault.exception.VaultException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SuppressWarnings("SpellCheckingInspection")
+class TransitJsonCodecTest {
+    private final TransitJsonCodec codec = new TransitJsonCodec(new JsonFactory());
+
+    @Test
+    void testWriteRequestEncodesPlaintextAsBase64() throws IOException {
+        var body = codec.writeRequest(VaultTransitEndpoint.ENCRYPT, "some test".getBytes());
+
+        assertEquals("{\"plaintext\":\"c29tZSB0ZXN0\"}", new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWriteRequestEscapesCiphertext() throws IOException {
+        var body = codec.writeRequest(VaultTransitEndpoint.DECRYPT, "vault:v1:\"abc\\".getBytes());
+
+        assertEquals("{\"ciphertext\":\"vault:v1:\\\"abc\\\\\"}", new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWriteBatchRequest() throws IOException {
+        var body = codec.writeBatchRequest(VaultTransitEndpoint.REWRAP, List.of("vault:v1:a".getBytes(), "vault:v1:b".getBytes()));
+
+        assertEquals("{\"batch_input\":[{\"ciphertext\":\"vault:v1:a\"},{\"ciphertext\":\"vault:v1:b\"}]}",
+                new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWriteRequestLargerThanTheInitialBuffer() throws IOException {
+        var value = "a".repeat(20_000);
+        var body = codec.writeRequest(VaultTransitEndpoint.DECRYPT, value.getBytes());
+
+        assertEquals("{\"ciphertext\":\"" + value + "\"}", new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testReadResponseDecodesPlaintextAndSkipsOtherFields() throws IOException, VaultException {
+        var body = "{\"request_id\": \"1\", \"auth\": null, \"data\": {\"other\": {\"a\": [1, 2]}, \"plaintext\": \"c29tZSB0ZXN0\"}, \"warnings\": null}";
+
+        assertArrayEquals("some test".toCharArray(), codec.readResponse(VaultTransitEndpoint.DECRYPT, body.getBytes()));
+    }
+
+    @Test
+    void testReadResponseFailsOnMissingField() {
+        assertThrows(VaultException.class, () -> codec.readResponse(VaultTransitEndpoint.ENCRYPT, "{\"data\": {}}".getBytes()));
+        assertThrows(VaultException.class, () -> codec.readResponse(VaultTransitEndpoint.ENCRYPT, "{\"atad\": {}}".getBytes()));
+        assertThrows(VaultException.class, () -> codec.readResponse(VaultTransitEndpoint.ENCRYPT, "[]".getBytes()));
+    }
+
+    @Test
+    void testReadBatchResponse() throws IOException, VaultException {
+        var body = "{\"data\": {\"batch_results\": [{\"ciphertext\": \"vault:v1:a\", \"key_version\": 1}, {\"error\": \"invalid\"}]}}";
+
+        var items = codec.readBatchResponse(VaultTransitEndpoint.ENCRYPT, body.getBytes(), 2);
+
+        assertFalse(items.get(0).isFailure());
+        assertArrayEquals("vault:v1:a".toCharArray(), items.get(0).getValue());
+        assertTrue(items.get(1).isFailure());
+        assertEquals("invalid", items.get(1).getError());
+
+        assertThrows(VaultException.class, () -> codec.readBatchResponse(VaultTransitEndpoint.ENCRYPT, body.getBytes(), 3));
+    }
+
+    @Test
+    void testReadKeySkipsTheKeyVersions() throws IOException, VaultException {
+        var body = "{\"data\": {\"keys\": {\"1\": 1700000000, \"2\": 1700000001, \"3\": 1700000002}, \"latest_version\": 3, \"min_decryption_version\": 2, \"name\": \"appkey\"}}";
+
+        var key = codec.readKey(body.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(3, key.getLatestVersion());
+        assertEquals(2, key.getMinDecryptionVersion());
+    }
+
+    @Test
+    void testReadKeyFailsWithoutVersions() {
+        var body = "{\"data\": {\"name\": \"appkey\"}}";
+
+        assertThrows(VaultException.class, () -> codec.readKey(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testReadDataKey() throws IOException, VaultException {
+        var body = "{\"data\": {\"ciphertext\": \"vault:v1:wrapped\", \"key_version\": 1, \"plaintext\": \"c29tZSB0ZXN0\"}}";
+
+        var dataKey = codec.readDataKey(body.getBytes(StandardCharsets.UTF_8));
+
+        assertArrayEquals("some test".getBytes(), dataKey.getPlaintext());
+        assertEquals("vault:v1:wrapped", String.valueOf(dataKey.getCiphertext()));
+    }
+
+    @Test
+    void testVerifyRequestAndResponse() throws IOException, VaultException {
+        var body = codec.writeVerifyRequest("some test".getBytes(), "vault:v1:hmac".toCharArray());
+
+        assertEquals("{\"input\":\"c29tZSB0ZXN0\",\"hmac\":\"vault:v1:hmac\"}", new String(body, StandardCharsets.UTF_8));
+        assertTrue(codec.readVerifyResponse("{\"data\": {\"valid\": true}}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(codec.readVerifyResponse("{\"data\": {\"valid\": false}}".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(VaultException.class, () -> codec.readVerifyResponse("{\"data\": {}}".getBytes(StandardCharsets.UTF_8)));
+    }
+}
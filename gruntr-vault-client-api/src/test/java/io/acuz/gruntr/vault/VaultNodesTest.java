@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VaultNodesTest {
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    void testPrefersTheFasterNode() throws Exception {
+        var nodes = new VaultNodes(List.of(url("http://a:8200"), url("http://b:8200")), 100 * MILLIS, System::nanoTime);
+        var slow = nodes.getNodes().get(0);
+        var fast = nodes.getNodes().get(1);
+
+        nodes.onStart(slow);
+        nodes.onSuccess(slow, 50 * MILLIS);
+        nodes.onStart(fast);
+        nodes.onSuccess(fast, 5 * MILLIS);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(fast, nodes.select());
+        }
+    }
+
+    @Test
+    void testAccountsForRequestsInFlight() throws Exception {
+        var nodes = new VaultNodes(List.of(url("http://a:8200"), url("http://b:8200")), 100 * MILLIS, System::nanoTime);
+        var busy = nodes.getNodes().get(0);
+        var idle = nodes.getNodes().get(1);
+
+        nodes.onStart(busy);
+        nodes.onSuccess(busy, 5 * MILLIS);
+        nodes.onStart(idle);
+        nodes.onSuccess(idle, 8 * MILLIS);
+
+        for (int i = 0; i < 4; i++) {
+            nodes.onStart(busy);
+        }
+
+        assertEquals(idle, nodes.select());
+    }
+
+    @Test
+    void testEjectsAFailingNodeForAWhile() throws Exception {
+        var now = new AtomicLong();
+        var nodes = new VaultNodes(List.of(url("http://a:8200"), url("http://b:8200")), 100 * MILLIS, now::get);
+        var failing = nodes.getNodes().get(0);
+        var healthy = nodes.getNodes().get(1);
+
+        for (int i = 0; i < 3; i++) {
+            nodes.onStart(failing);
+            nodes.onFailure(failing, MILLIS);
+        }
+
+        assertTrue(failing.isEjected(now.get()));
+
+        // the healthy node is slower than the penalized one, but the failing node is ejected
+        nodes.onStart(healthy);
+        nodes.onSuccess(healthy, 1_000 * MILLIS);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(healthy, nodes.select());
+        }
+
+        now.addAndGet(100 * MILLIS);
+        assertFalse(failing.isEjected(now.get()));
+    }
+
+    @Test
+    void testFallsBackWhenAllNodesAreEjected() throws Exception {
+        var now = new AtomicLong();
+        var nodes = new VaultNodes(List.of(url("http://a:8200"), url("http://b:8200"), url("http://c:8200")), 100 * MILLIS, now::get);
+
+        for (int n = 2; n >= 0; n--) {
+            var node = nodes.getNodes().get(n);
+
+            for (int i = 0; i < 3; i++) {
+                nodes.onStart(node);
+                nodes.onFailure(node, MILLIS);
+            }
+
+            now.addAndGet(MILLIS);
+        }
+
+        assertEquals(nodes.getNodes().get(2), nodes.select());
+    }
+
+    @Test
+    void testEjectsAcrossAClockOverflow() throws Exception {
+        var now = new AtomicLong(Long.MAX_VALUE - 50 * MILLIS);
+        var nodes = new VaultNodes(List.of(url("http://a:8200"), url("http://b:8200")), 100 * MILLIS, now::get);
+        var failing = nodes.getNodes().get(0);
+
+        assertFalse(failing.isEjected(now.get()));
+
+        for (int i = 0; i < 3; i++) {
+            nodes.onStart(failing);
+            nodes.onFailure(failing, MILLIS);
+        }
+
+        // the end of the ejection lies past the overflow of the clock
+        now.addAndGet(60 * MILLIS);
+        assertTrue(failing.isEjected(now.get()));
+
+        now.addAndGet(40 * MILLIS);
+        assertFalse(failing.isEjected(now.get()));
+    }
+
+    private static URL url(String url) throws Exception {
+        return URI.create(url).toURL();
+    }
+}
@@ -16,27 +16,65 @@
 
 package io.acuz.gruntr.vault;
 
+import io.acuz.gruntr.util.DigestUtils;
 import io.acuz.gruntr.vault.exception.VaultException;
+import io.acuz.gruntr.vault.metrics.VaultMetricsListener;
 import io.acuz.gruntr.vault.model.VaultToken;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.ServerSocket;
 import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Properties;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SuppressWarnings("SpellCheckingInspection")
 class VaultTransitRestClientTest {
     final static MockWebServer MOCK_SERVER = new MockWebServer();
+    private static final HeldCertificate LOCALHOST = new HeldCertificate.Builder().addSubjectAlternativeName("localhost").build();
+    private static final HandshakeCertificates LOCALHOST_CERTIFICATES = new HandshakeCertificates.Builder()
+            .heldCertificate(LOCALHOST)
+            .addTrustedCertificate(LOCALHOST.certificate())
+            .build();
 
     @BeforeAll
     static void startMockServer() throws IOException {
@@ -240,6 +278,217 @@ class VaultTransitRestClientTest {
             assertEquals("/v1/transit/project_name/encrypt/appkey", MOCK_SERVER.takeRequest().getPath());
     }
 
+    @Test
+    void testVaultClientEncryptsIdenticalValuesOnce() throws MalformedURLException, InterruptedException, VaultException, NoSuchAlgorithmException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==\" } }";
+        var requestCount = MOCK_SERVER.getRequestCount();
+
+        var client = VaultTransitRestClient.builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .deduplicateValues(true)
+                .build();
+        var properties = new Properties();
+
+        properties.put("primary.datasource.password", "my password");
+        properties.put("replica.datasource.password", "my password");
+        properties.put("my.secret", "my secret");
+
+        // 2 distinct values + the hash
+        for (int i = 0; i < 3; i++)
+            MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+
+        var encryptedProperties = client.encrypt(properties);
+
+        assertEquals(encryptedProperties.get("primary.datasource.password"), encryptedProperties.get("replica.datasource.password"));
+        assertEquals(requestCount + 3, MOCK_SERVER.getRequestCount());
+
+        for (int i = 0; i < 3; i++) //dequeue requests
+            MOCK_SERVER.takeRequest();
+
+        // identical ciphertexts are decrypted once: the hash check and a single decrypt
+        var digest = DigestUtils.sha3digest(url.toExternalForm(), "transit/project_name", "appkey");
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"" + Base64.getEncoder().encodeToString(digest) + "\" } }";
+
+        encryptedProperties.put("my.secret", encryptedProperties.get("primary.datasource.password"));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(sha3ResultCheck));
+        MOCK_SERVER.enqueue(new MockResponse().setBody("{ \"data\": {\"plaintext\": \"bXkgcGFzc3dvcmQ=\" } }"));
+
+        var decryptedProperties = client.decrypt(encryptedProperties);
+
+        assertEquals("my password", decryptedProperties.get("primary.datasource.password"));
+        assertEquals("my password", decryptedProperties.get("replica.datasource.password"));
+        assertEquals("my password", decryptedProperties.get("my.secret"));
+        assertEquals(requestCount + 5, MOCK_SERVER.getRequestCount());
+
+        MOCK_SERVER.takeRequest(); // dequeue requests
+        MOCK_SERVER.takeRequest();
+    }
+
+    @Test
+    void testVaultClientEncryptsOnlyChangedValues() throws IOException, VaultException {
+        var inputPattern = Pattern.compile("\"(?:input|plaintext)\":\"([^\"]*)\"");
+        var encryptRequests = new AtomicInteger();
+
+        try (var server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    var body = request.getBody().readUtf8();
+                    var field = request.getPath().contains("/hmac/") ? "hmac" : "ciphertext";
+                    var results = new ArrayList<String>();
+
+                    if ("ciphertext".equals(field)) {
+                        encryptRequests.incrementAndGet();
+                    }
+
+                    // answers with the input itself, so equal values get equal results
+                    for (var matcher = inputPattern.matcher(body); matcher.find(); ) {
+                        results.add("{\"" + field + "\": \"vault:v1:" + matcher.group(1) + "\"}");
+                    }
+
+                    return new MockResponse().setBody(body.contains("batch_input")
+                            ? "{ \"data\": {\"batch_results\": [" + String.join(",", results) + "] } }"
+                            : "{ \"data\": " + results.get(0) + " }");
+                }
+            });
+            server.start();
+
+            var client = createClient(server.url("/").url(), 10);
+            var properties = new Properties();
+
+            properties.put("my.secret", "my secret");
+            properties.put("my.password", "my password");
+            properties.put("my.token", "vault:v1:already-encrypted");
+
+            var first = client.encrypt(properties, new Properties());
+
+            assertEquals("vault:v1:already-encrypted", first.get("my.token"));
+            assertNull(first.get(VaultTransitRestClient.GRUNTR__VALUE_HMAC_PREFIX + "my.token"));
+            assertTrue(first.getProperty(VaultTransitRestClient.GRUNTR__VALUE_HMAC_PREFIX + "my.secret").startsWith("vault:v1:"));
+            assertEquals(2, encryptRequests.get()); // the values and the hash
+
+            // nothing changed: only the HMACs are requested, the ciphertexts and the hash are kept
+            var second = client.encrypt(properties, first);
+
+            assertEquals(first, second);
+            assertEquals(2, encryptRequests.get());
+
+            // a changed value is encrypted again, the hash only covers the headers and is kept
+            properties.put("my.password", "my new password");
+            var third = client.encrypt(properties, second);
+
+            assertEquals(first.get("my.secret"), third.get("my.secret"));
+            assertEquals("vault:v1:" + Base64.getEncoder().encodeToString("my new password".getBytes(StandardCharsets.UTF_8)), third.get("my.password"));
+            assertEquals(3, encryptRequests.get());
+
+            // values of another key are never reused: both values and the hash are encrypted again
+            var previous = new Properties();
+            previous.putAll(third);
+            previous.put(VaultTransitRestClient.GRUNTR__VAULT_TRANSIT_KEY, "otherkey");
+
+            var moved = client.encrypt(properties, previous);
+
+            assertEquals("appkey", moved.get(VaultTransitRestClient.GRUNTR__VAULT_TRANSIT_KEY));
+            assertEquals(5, encryptRequests.get());
+        }
+    }
+
+    @Test
+    void testVaultClientEncryptsOnlyChangedValuesWithEnvelopeEncryption() throws IOException, VaultException, NoSuchAlgorithmException {
+        var inputPattern = Pattern.compile("\"input\":\"([^\"]*)\"");
+        var dataKey = Base64.getEncoder().encodeToString(new byte[32]);
+        var dataKeyRequests = new AtomicInteger();
+        var unwrapRequests = new AtomicInteger();
+
+        try (var server = new MockWebServer()) {
+            var url = server.url("/").url();
+            var digest = DigestUtils.sha3digest(url.toExternalForm(), "transit/project_name", "appkey");
+
+            server.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    var body = request.getBody().readUtf8();
+                    var path = request.getPath();
+
+                    if (path.contains("/datakey/")) {
+                        dataKeyRequests.incrementAndGet();
+                        return new MockResponse().setBody("{ \"data\": {\"ciphertext\": \"vault:v1:wrapped\", \"plaintext\": \"" + dataKey + "\" } }");
+                    } else if (path.contains("/encrypt/")) {
+                        return new MockResponse().setBody("{ \"data\": {\"ciphertext\": \"vault:v1:hash\" } }");
+                    } else if (path.contains("/decrypt/")) {
+                        var plaintext = body.contains("vault:v1:wrapped") ? dataKey : Base64.getEncoder().encodeToString(digest);
+
+                        if (body.contains("vault:v1:wrapped")) {
+                            unwrapRequests.incrementAndGet();
+                        }
+
+                        return new MockResponse().setBody("{ \"data\": {\"plaintext\": \"" + plaintext + "\" } }");
+                    }
+
+                    // answers with the input itself, so equal values get equal results
+                    var results = new ArrayList<String>();
+
+                    for (var matcher = inputPattern.matcher(body); matcher.find(); ) {
+                        results.add("{\"hmac\": \"vault:v1:" + matcher.group(1) + "\"}");
+                    }
+
+                    return new MockResponse().setBody(body.contains("batch_input")
+                            ? "{ \"data\": {\"batch_results\": [" + String.join(",", results) + "] } }"
+                            : "{ \"data\": " + results.get(0) + " }");
+                }
+            });
+
+            var client = VaultTransitRestClient.builder()
+                    .host(url)
+                    .transitPath("transit/project_name")
+                    .transitKeyName("appkey")
+                    .token(VaultToken.of("root"))
+                    .envelopeEncryption(true)
+                    .batchSize(10)
+                    .build();
+            var properties = new Properties();
+
+            properties.put("my.secret", "my secret");
+            properties.put("my.password", "my password");
+
+            var first = client.encrypt(properties, new Properties());
+
+            assertTrue(first.getProperty("my.secret").startsWith("gruntr:v1:"));
+            assertEquals(1, dataKeyRequests.get());
+
+            // a changed value is encrypted with the previous data key, the unchanged value is kept as is
+            properties.put("my.password", "my new password");
+            var second = client.encrypt(properties, first);
+
+            assertEquals(first.getProperty("my.secret"), second.getProperty("my.secret"));
+            assertEquals("vault:v1:wrapped", second.getProperty(VaultTransitRestClient.GRUNTR__DATA_KEY));
+            assertTrue(second.getProperty("my.password").startsWith("gruntr:v1:"));
+            assertEquals(1, dataKeyRequests.get());
+            assertEquals(1, unwrapRequests.get());
+
+            // the encrypted file itself as input: its values are copied, never encrypted twice
+            var input = new Properties();
+            input.putAll(second);
+            input.put("my.token", "my token");
+
+            var third = client.encrypt(input, second);
+
+            assertEquals(second.getProperty("my.secret"), third.getProperty("my.secret"));
+            assertEquals(second.getProperty("my.password"), third.getProperty("my.password"));
+            assertEquals(1, dataKeyRequests.get());
+
+            var decryptedProperties = client.decrypt(third);
+
+            assertEquals("my secret", decryptedProperties.get("my.secret"));
+            assertEquals("my new password", decryptedProperties.get("my.password"));
+            assertEquals("my token", decryptedProperties.get("my.token"));
+        }
+    }
+
     @Test
     void testVaultClientRewrapProperties() throws MalformedURLException, InterruptedException, VaultException {
         var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
@@ -280,14 +529,1063 @@ class VaultTransitRestClientTest {
             assertEquals("/v1/transit/project_name/rewrap/appkey", MOCK_SERVER.takeRequest().getPath());
     }
 
-    private VaultTransitRestClient createClient(URL url) {
-        return VaultTransitRestClient
+    @Test
+    void testVaultClientRewrapsOnlyStaleProperties() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"OWVlYWUwMjU5NWQzMWRmNmFmYjhkZDlhMDI4NzllNzU0YzA4NTA3MTYzYzFhNDg0Y2IzY2FkMjUwYWE2MjhhZg==\" } }";
+        var keyBody = "{ \"data\": {\"latest_version\": 2, \"min_decryption_version\": 1 } }";
+        var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v2:rewrapped\" } }";
+
+        var client = VaultTransitRestClient.builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .rewrapOnlyStale(true)
+                .build();
+        var properties = createGruntrProperties();
+
+        properties.put("my.stale", "vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+        properties.put("my.current", "vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(sha3ResultCheck));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(keyBody));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+
+        var encryptedProperties = client.rewrap(properties);
+
+        assertEquals("vault:v2:rewrapped", encryptedProperties.get("my.stale"));
+        assertEquals("vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==", encryptedProperties.get("my.current"));
+
+        assertEquals("/v1/transit/project_name/decrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+
+        var keyRequest = MOCK_SERVER.takeRequest();
+        assertEquals("/v1/transit/project_name/keys/appkey", keyRequest.getPath());
+        assertEquals("GET", keyRequest.getMethod());
+
+        var rewrapRequest = MOCK_SERVER.takeRequest();
+        assertEquals("/v1/transit/project_name/rewrap/appkey", rewrapRequest.getPath());
+        assertTrue(rewrapRequest.getBody().readUtf8().contains("vault:v1:"));
+    }
+
+    @Test
+    void testVaultClientRewrapsAllPropertiesWhenTheKeyCannotBeRead() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"OWVlYWUwMjU5NWQzMWRmNmFmYjhkZDlhMDI4NzllNzU0YzA4NTA3MTYzYzFhNDg0Y2IzY2FkMjUwYWE2MjhhZg==\" } }";
+        var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v2:rewrapped\" } }";
+
+        var client = VaultTransitRestClient.builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .rewrapOnlyStale(true)
+                .build();
+        var properties = createGruntrProperties();
+
+        properties.put("my.stale", "vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(sha3ResultCheck));
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(403).setBody("{\"errors\":[\"1 error occurred:\\n\\t* permission denied\\n\\n\"]}"));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+
+        var encryptedProperties = client.rewrap(properties);
+
+        assertEquals("vault:v2:rewrapped", encryptedProperties.get("my.stale"));
+
+        assertEquals("/v1/transit/project_name/decrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+        assertEquals("/v1/transit/project_name/keys/appkey", MOCK_SERVER.takeRequest().getPath());
+        assertEquals("/v1/transit/project_name/rewrap/appkey", MOCK_SERVER.takeRequest().getPath());
+    }
+
+    @Test
+    void testVaultClientEnvelopeEncryption() throws MalformedURLException, InterruptedException, VaultException, NoSuchAlgorithmException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var dataKey = Base64.getEncoder().encodeToString(new byte[32]);
+        var dataKeyBody = "{ \"data\": {\"ciphertext\": \"vault:v1:wrapped\", \"plaintext\": \"" + dataKey + "\" } }";
+        var hashBody = "{ \"data\": {\"ciphertext\": \"vault:v1:9eeae02595d31df6afb8dd9a02879e754c08507163c1a484cb3cad250aa628af\" } }";
+
+        var client = VaultTransitRestClient.builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .envelopeEncryption(true)
+                .build();
+        var properties = new Properties();
+
+        properties.put("my.plaintext", "this is plain text");
+        properties.put("my.password", "my very secure value");
+        properties.put("my.secret", "another very secure value");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(dataKeyBody));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(hashBody));
+
+        var encryptedProperties = client.encrypt(properties);
+
+        assertEquals("/v1/transit/project_name/datakey/plaintext/appkey", MOCK_SERVER.takeRequest().getPath());
+        assertEquals("/v1/transit/project_name/encrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+        assertEquals("vault:v1:wrapped", encryptedProperties.get(VaultTransitRestClient.GRUNTR__DATA_KEY));
+        assertTrue(encryptedProperties.getProperty("my.password").startsWith("gruntr:v1:"));
+
+        // hash check, then a single call to unwrap the data key
+        var digest = DigestUtils.sha3digest(url.toExternalForm(), "transit/project_name", "appkey");
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"" + Base64.getEncoder().encodeToString(digest) + "\" } }";
+        var unwrapBody = "{ \"data\": {\"plaintext\": \"" + dataKey + "\" } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(sha3ResultCheck));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(unwrapBody));
+
+        var decryptedProperties = client.decrypt(encryptedProperties);
+
+        assertEquals("this is plain text", decryptedProperties.get("my.plaintext"));
+        assertEquals("my very secure value", decryptedProperties.get("my.password"));
+        assertEquals("another very secure value", decryptedProperties.get("my.secret"));
+
+        assertEquals("/v1/transit/project_name/decrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+
+        var unwrapRequest = MOCK_SERVER.takeRequest();
+        assertEquals("/v1/transit/project_name/decrypt/appkey", unwrapRequest.getPath());
+        assertTrue(unwrapRequest.getBody().readUtf8().contains("vault:v1:wrapped"));
+    }
+
+    @Test
+    void testVaultClientHmacIntegrityIsValidatedOnce() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+
+        var client = VaultTransitRestClient.builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .integrityMode(IntegrityMode.HMAC)
+                .build();
+        var properties = new Properties();
+        properties.put("my.secret", "my very secure value");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody("{ \"data\": {\"ciphertext\": \"vault:v1:secret\" } }"));
+        MOCK_SERVER.enqueue(new MockResponse().setBody("{ \"data\": {\"hmac\": \"vault:v1:hmac\" } }"));
+
+        var encryptedProperties = client.encrypt(properties);
+
+        assertEquals("vault:v1:hmac", encryptedProperties.get(VaultTransitRestClient.GRUNTR__HMAC));
+        assertNull(encryptedProperties.get(VaultTransitRestClient.GRUNTR__SHA_3));
+        assertEquals("/v1/transit/project_name/encrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+        assertEquals("/v1/transit/project_name/hmac/appkey", MOCK_SERVER.takeRequest().getPath());
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody("{ \"data\": {\"valid\": true } }"));
+        MOCK_SERVER.enqueue(new MockResponse().setBody("{ \"data\": {\"plaintext\": \"bXkgdmVyeSBzZWN1cmUgdmFsdWU=\" } }"));
+        MOCK_SERVER.enqueue(new MockResponse().setBody("{ \"data\": {\"plaintext\": \"bXkgdmVyeSBzZWN1cmUgdmFsdWU=\" } }"));
+
+        assertEquals("my very secure value", client.decrypt(encryptedProperties).get("my.secret"));
+        assertEquals("my very secure value", client.decrypt(encryptedProperties).get("my.secret"));
+
+        var verifyRequest = MOCK_SERVER.takeRequest();
+        assertEquals("/v1/transit/project_name/verify/appkey", verifyRequest.getPath());
+        assertTrue(verifyRequest.getBody().readUtf8().contains("\"hmac\":\"vault:v1:hmac\""));
+
+        // the second load skips the validation
+        assertEquals("/v1/transit/project_name/decrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+        assertEquals("/v1/transit/project_name/decrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+    }
+
+    @Test
+    void testVaultClientRejectsInvalidHmac() throws MalformedURLException, InterruptedException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var client = createClient(url);
+        var properties = createGruntrProperties();
+        properties.remove(VaultTransitRestClient.GRUNTR__SHA_3);
+        properties.put(VaultTransitRestClient.GRUNTR__HMAC, "vault:v1:hmac");
+        properties.put("my.secret", "vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody("{ \"data\": {\"valid\": false } }"));
+
+        assertThrows(IllegalStateException.class, () -> client.decrypt(properties));
+        assertEquals("/v1/transit/project_name/verify/appkey", MOCK_SERVER.takeRequest().getPath());
+    }
+
+    @Test
+    void testVaultClientValidatesAndDecryptsConcurrently() throws IOException, VaultException {
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"OWVlYWUwMjU5NWQzMWRmNmFmYjhkZDlhMDI4NzllNzU0YzA4NTA3MTYzYzFhNDg0Y2IzY2FkMjUwYWE2MjhhZg==\" } }";
+        var tamperedResult = "{ \"data\": {\"plaintext\": \"NDEyZTU1NWZjYmZjNDNmMmUxYWIyZWQzZDNiM2JmNWNjMDIwZGM0YWQwYmVkYjRlYzg4OTIzYzcxNGUwODg4Yg==\" } }";
+        var mockBody = "{ \"data\": {\"plaintext\": \"bXkgdmVyeSBzZWN1cmUgdmFsdWU=\" } }";
+        var valueRequested = new CountDownLatch(1);
+
+        try (var server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                    var body = request.getBody().readUtf8();
+
+                    if (body.contains("vault:v1:9eeae")) {
+                        // the header is only validated once the value was sent as well
+                        return valueRequested.await(5, TimeUnit.SECONDS)
+                                ? new MockResponse().setBody(body.contains("tampered") ? tamperedResult : sha3ResultCheck)
+                                : new MockResponse().setResponseCode(500);
+                    }
+
+                    valueRequested.countDown();
+
+                    return new MockResponse().setBody(mockBody);
+                }
+            });
+            server.start();
+
+            var client = VaultTransitRestClient.builder()
+                    .host(server.url("/").url())
+                    .transitPath("transit/project_name")
+                    .transitKeyName("appkey")
+                    .token(VaultToken.of("root"))
+                    .validateConcurrently(true)
+                    .build();
+            var properties = createGruntrProperties();
+            properties.put("my.encryption", "vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+
+            assertEquals("my very secure value", client.decrypt(properties).get("my.encryption"));
+            assertEquals(2, server.getRequestCount());
+
+            properties.put("gruntr__sha3", "vault:v1:9eeae-tampered");
+            var exception = assertThrows(IllegalStateException.class, () -> client.decrypt(properties));
+            assertEquals("Hash validation failed, gruntr__ values were tampered with?", exception.getMessage());
+        }
+    }
+
+    @Test
+    void testVaultClientDecryptPropertiesInBatch() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"OWVlYWUwMjU5NWQzMWRmNmFmYjhkZDlhMDI4NzllNzU0YzA4NTA3MTYzYzFhNDg0Y2IzY2FkMjUwYWE2MjhhZg==\" } }";
+        var mockBody = "{ \"data\": {\"batch_results\": [{\"plaintext\": \"bXkgdmVyeSBzZWN1cmUgdmFsdWU=\"}, {\"plaintext\": \"bXkgdmVyeSBzZWN1cmUgdmFsdWU=\"}] } }";
+
+        var client = createClient(url, 2);
+        var properties = createGruntrProperties();
+
+        properties.put("my.plaintext", "this is plain text");
+        properties.put("my.secret", "vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+        properties.put("my.password", "vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(sha3ResultCheck));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+
+        var decryptedProperties = client.decrypt(properties);
+
+        assertEquals(3, decryptedProperties.size());
+        assertEquals("my very secure value", decryptedProperties.get("my.secret"));
+        assertEquals("my very secure value", decryptedProperties.get("my.password"));
+
+        assertEquals("/v1/transit/project_name/decrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+
+        var batchRequest = MOCK_SERVER.takeRequest();
+        assertEquals("/v1/transit/project_name/decrypt/appkey", batchRequest.getPath());
+        assertTrue(batchRequest.getBody().readUtf8().contains("\"batch_input\""));
+    }
+
+    @Test
+    void testVaultClientBatchErrorNamesPropertyKey() throws MalformedURLException, InterruptedException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockBody = "{ \"data\": {\"batch_results\": [{\"error\": \"invalid ciphertext\"}, {\"error\": \"invalid ciphertext\"}] } }";
+
+        var client = createClient(url, 10);
+        var properties = new Properties();
+
+        properties.put("my.secret", "my secret");
+        properties.put("my.password", "my password");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+
+        var exception = assertThrows(VaultException.class, () -> client.encrypt(properties));
+        assertTrue(exception.getMessage().contains("invalid ciphertext"));
+        assertTrue(exception.getMessage().contains("my.secret") || exception.getMessage().contains("my.password"));
+
+        MOCK_SERVER.takeRequest(); // dequeue request
+    }
+
+    @Test
+    void testVaultClientRejectedBatchNamesPropertyKey() throws MalformedURLException, InterruptedException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockBody = "{ \"errors\": [], \"data\": {\"batch_results\": [{\"error\": \"invalid ciphertext\"}, {\"error\": \"invalid ciphertext\"}] } }";
+
+        var client = createClient(url, 10);
+        var properties = new Properties();
+
+        properties.put("my.secret", "my secret");
+        properties.put("my.password", "my password");
+
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(400).setBody(mockBody));
+
+        var exception = assertThrows(VaultException.class, () -> client.encrypt(properties));
+        assertTrue(exception.getMessage().contains("invalid ciphertext"));
+        assertTrue(exception.getMessage().contains("my.secret") || exception.getMessage().contains("my.password"));
+
+        MOCK_SERVER.takeRequest(); // dequeue request
+    }
+
+    @Test
+    void testVaultClientFailsInFlightRequestsOnClose() throws IOException, InterruptedException {
+        try (var server = new MockWebServer()) {
+            var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v1:YQ==\" } }";
+
+            server.enqueue(new MockResponse().setBody(mockBody).setHeadersDelay(3, TimeUnit.SECONDS));
+
+            var client = createClient(server.url("/").url());
+            var response = client.encryptAsync("some test".getBytes());
+
+            server.takeRequest(); // the request is in flight
+            client.close();
+
+            // failed by closing, not by the response arriving later
+            assertTrue(response.isCompletedExceptionally());
+
+            var exception = assertThrows(ExecutionException.class, response::get);
+
+            assertInstanceOf(VaultException.class, exception.getCause());
+            assertTrue(exception.getCause().getMessage().contains("closed"), exception.getCause().getMessage());
+        }
+    }
+
+    @Test
+    void testVaultClientReusesConnectionAndFailsAfterClose() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==\" } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+
+        var client = VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        client.encrypt("some test".getBytes());
+        client.encrypt("some test".getBytes());
+
+        MOCK_SERVER.takeRequest();
+        // the second request travels over the same connection as the first one
+        assertEquals(1, MOCK_SERVER.takeRequest().getSequenceNumber());
+
+        client.close();
+        assertThrows(VaultException.class, () -> client.encrypt("some test".getBytes()));
+    }
+
+    @Test
+    void testVaultClientAsyncDecryption() throws MalformedURLException, InterruptedException, ExecutionException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockResponseBody = "{ \"data\": {\"plaintext\": \"c29tZXRoaW5nIHZlcnkgc2VjcmV0\" } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockResponseBody));
+
+        var client = createClient(url);
+        var result = client.decryptAsync("vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==".toCharArray());
+
+        assertEquals("something very secret", String.copyValueOf(result.get()));
+        assertEquals("/v1/transit/project_name/decrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+    }
+
+    @Test
+    void testVaultClientAsyncFailsWithVaultException() throws MalformedURLException, InterruptedException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(403).setBody(""));
+
+        var client = createClient(url);
+        var result = client.rewrapAsync("vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==".toCharArray());
+
+        var exception = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(VaultException.class, exception.getCause());
+
+        MOCK_SERVER.takeRequest(); // dequeue request
+    }
+
+    @Test
+    void testVaultClientReportsMetrics() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockBody = "{ \"data\": {\"batch_results\": [{\"ciphertext\": \"vault:v1:YQ==\"}, {\"ciphertext\": \"vault:v1:Yg==\"}] } }";
+        var hashBody = "{ \"data\": {\"ciphertext\": \"vault:v1:Yw==\" } }";
+        var responses = new ArrayList<String>();
+
+        var client = VaultTransitRestClient
                 .builder()
                 .host(url)
                 .transitPath("transit/project_name")
                 .transitKeyName("appkey")
                 .token(VaultToken.of("root"))
+                .batchSize(10)
+                .metricsListener(new VaultMetricsListener() {
+                    @Override
+                    public void onResponse(String operation, int batchSize, int bytesOut, int bytesIn, int statusCode, long latencyNanos) {
+                        assertTrue(bytesOut > 0 && latencyNanos > 0);
+                        responses.add(operation + ':' + batchSize + ':' + statusCode + (bytesIn > 0 ? "" : ":empty"));
+                    }
+
+                    @Override
+                    public void onFailure(String operation, int batchSize, int bytesOut, Throwable cause, long latencyNanos) {
+                        responses.add(operation + ":failure");
+                    }
+                })
                 .build();
+        var properties = new Properties();
+
+        properties.put("my.secret", "my secret");
+        properties.put("my.password", "my password");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(hashBody));
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(503));
+
+        client.encrypt(properties);
+        assertThrows(VaultException.class, () -> client.decrypt("vault:v1:YQ==".toCharArray()));
+
+        assertEquals(List.of("encrypt:2:200", "encrypt:1:200", "decrypt:1:503:empty"), responses);
+
+        MOCK_SERVER.takeRequest(); // dequeue requests
+        MOCK_SERVER.takeRequest();
+        MOCK_SERVER.takeRequest();
+    }
+
+    @Test
+    void testVaultClientRecordsFlightRecorderEvents() throws IOException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockBody = "{ \"data\": {\"batch_results\": [{\"ciphertext\": \"vault:v1:YQ==\"}, {\"ciphertext\": \"vault:v1:Yg==\"}] } }";
+        var hashBody = "{ \"data\": {\"ciphertext\": \"vault:v1:Yw==\" } }";
+        var dump = Files.createTempFile("gruntr", ".jfr");
+
+        var client = createClient(url, 10);
+        var properties = new Properties();
+
+        properties.put("my.secret", "my secret");
+        properties.put("my.password", "my password");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(hashBody));
+
+        try (var recording = new Recording()) {
+            recording.enable("io.acuz.gruntr.VaultRequest");
+            recording.enable("io.acuz.gruntr.VaultProperties");
+            recording.start();
+
+            client.encrypt(properties);
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        var events = RecordingFile.readAllEvents(dump);
+        Files.delete(dump);
+
+        // events recorded by different threads are not read back in order
+        var requests = events.stream()
+                .filter(event -> "io.acuz.gruntr.VaultRequest".equals(event.getEventType().getName()))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .collect(Collectors.toList());
+        var operations = events.stream().filter(event -> "io.acuz.gruntr.VaultProperties".equals(event.getEventType().getName())).collect(Collectors.toList());
+
+        assertEquals(2, requests.size());
+        assertEquals("encrypt", requests.get(0).getString("operation"));
+        assertEquals("appkey", requests.get(0).getString("keyName"));
+        assertEquals(2, requests.get(0).getInt("batchSize"));
+        assertEquals(200, requests.get(0).getInt("statusCode"));
+        assertTrue(requests.get(0).getLong("bytesOut") > 0);
+
+        assertEquals(1, operations.size());
+        assertEquals("encrypt", operations.get(0).getString("operation"));
+        assertEquals(2, operations.get(0).getInt("properties"));
+        assertNull(operations.get(0).getString("failure"));
+
+        MOCK_SERVER.takeRequest(); // dequeue requests
+        MOCK_SERVER.takeRequest();
+    }
+
+    @Test
+    void testVaultClientRetriesRetryableFailures() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockResponseBody = "{ \"data\": {\"plaintext\": \"c29tZXRoaW5nIHZlcnkgc2VjcmV0\" } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(503));
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockResponseBody));
+
+        var client = createRetryingClient(url, 1).build();
+
+        assertArrayEquals("something very secret".toCharArray(), client.decrypt("vault:v1:YQ==".toCharArray()));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("/v1/transit/project_name/decrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+        }
+    }
+
+    @Test
+    void testVaultClientDoesNotRetryClientErrors() throws MalformedURLException, InterruptedException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var requestCount = MOCK_SERVER.getRequestCount();
+
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(400));
+
+        var client = createRetryingClient(url, 1).build();
+
+        assertThrows(VaultException.class, () -> client.decrypt("vault:v1:YQ==".toCharArray()));
+        assertEquals(requestCount + 1, MOCK_SERVER.getRequestCount());
+
+        MOCK_SERVER.takeRequest(); // dequeue request
+    }
+
+    @Test
+    void testVaultClientRetriesFailedBatchItems() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var batchBody = "{ \"data\": {\"batch_results\": [{\"ciphertext\": \"vault:v1:YQ==\"}, {\"error\": \"internal error\"}] } }";
+        var retryBody = "{ \"data\": {\"batch_results\": [{\"ciphertext\": \"vault:v1:Yg==\"}] } }";
+        var hashBody = "{ \"data\": {\"ciphertext\": \"vault:v1:Yw==\" } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(batchBody));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(retryBody));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(hashBody));
+
+        var client = createRetryingClient(url, 10).build();
+        var properties = new Properties();
+
+        properties.put("my.secret", "my secret");
+        properties.put("my.password", "my password");
+
+        var encrypted = client.encrypt(properties);
+
+        MOCK_SERVER.takeRequest(); // the whole batch
+        var retry = MOCK_SERVER.takeRequest().getBody().readUtf8();
+        MOCK_SERVER.takeRequest(); // the hash
+
+        assertTrue(encrypted.getProperty("my.secret").startsWith("vault:v1:"));
+        assertTrue(encrypted.getProperty("my.password").startsWith("vault:v1:"));
+        assertEquals(1, retry.split("plaintext", -1).length - 1, retry);
+    }
+
+    @Test
+    void testVaultClientDoesNotRetryInvalidBatchItems() throws MalformedURLException, InterruptedException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"OWVlYWUwMjU5NWQzMWRmNmFmYjhkZDlhMDI4NzllNzU0YzA4NTA3MTYzYzFhNDg0Y2IzY2FkMjUwYWE2MjhhZg==\" } }";
+        var batchBody = "{ \"data\": {\"batch_results\": [{\"plaintext\": \"YQ==\"}, {\"error\": \"internal error\"}, {\"error\": \"invalid ciphertext: no prefix\"}] } }";
+        var requestCount = MOCK_SERVER.getRequestCount();
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(sha3ResultCheck));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(batchBody));
+
+        var client = createRetryingClient(url, 10).build();
+        var properties = createGruntrProperties();
+
+        properties.put("my.first", "vault:v1:YQ==");
+        properties.put("my.second", "vault:v1:Yg==");
+        properties.put("my.third", "vault:v1:Yw==");
+
+        // the invalid value fails the request at once, the transient failure next to it is not retried either
+        var exception = assertThrows(VaultException.class, () -> client.decrypt(properties));
+
+        assertTrue(exception.getMessage().contains("invalid ciphertext"), exception.getMessage());
+        assertEquals(requestCount + 2, MOCK_SERVER.getRequestCount());
+
+        MOCK_SERVER.takeRequest(); // dequeue requests
+        MOCK_SERVER.takeRequest();
+    }
+
+    @Test
+    void testVaultClientCircuitBreakerFailsFast() throws MalformedURLException, InterruptedException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var breaker = CircuitBreaker.builder().failureThreshold(1).openDuration(Duration.ofMinutes(1)).build();
+
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(503));
+
+        var client = createRetryingClient(url, 1).retryPolicy(RetryPolicy.none()).circuitBreaker(breaker).build();
+
+        assertThrows(VaultException.class, () -> client.decrypt("vault:v1:YQ==".toCharArray()));
+        MOCK_SERVER.takeRequest(); // dequeue request
+
+        var requestCount = MOCK_SERVER.getRequestCount();
+        var exception = assertThrows(VaultException.class, () -> client.decrypt("vault:v1:YQ==".toCharArray()));
+
+        assertTrue(exception.getMessage().contains("circuit breaker"));
+        assertEquals(requestCount, MOCK_SERVER.getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testVaultClientHedgesSlowDecryption() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockResponseBody = "{ \"data\": {\"plaintext\": \"c29tZXRoaW5nIHZlcnkgc2VjcmV0\" } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockResponseBody).setHeadersDelay(5, TimeUnit.SECONDS));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockResponseBody));
+
+        var client = VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .hedgingPolicy(HedgingPolicy.builder().delay(Duration.ofMillis(20)).build())
+                .build();
+
+        var start = System.nanoTime();
+
+        assertArrayEquals("something very secret".toCharArray(), client.decrypt("vault:v1:YQ==".toCharArray()));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4));
+
+        var primary = MOCK_SERVER.takeRequest();
+        var hedge = MOCK_SERVER.takeRequest();
+
+        assertEquals(primary.getBody().readUtf8(), hedge.getBody().readUtf8());
+    }
+
+    @Test
+    void testVaultClientDoesNotHedgeBatches() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"OWVlYWUwMjU5NWQzMWRmNmFmYjhkZDlhMDI4NzllNzU0YzA4NTA3MTYzYzFhNDg0Y2IzY2FkMjUwYWE2MjhhZg==\" } }";
+        var mockBody = "{ \"data\": {\"batch_results\": [{\"plaintext\": \"bXkgdmVyeSBzZWN1cmUgdmFsdWU=\"}, {\"plaintext\": \"bXkgdmVyeSBzZWN1cmUgdmFsdWU=\"}] } }";
+
+        var client = VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .batchSize(2)
+                .hedgingPolicy(HedgingPolicy.builder().delay(Duration.ofMillis(20)).build())
+                .build();
+        var properties = createGruntrProperties();
+
+        properties.put("my.secret", "vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+        properties.put("my.password", "vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(sha3ResultCheck));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody).setHeadersDelay(300, TimeUnit.MILLISECONDS));
+
+        var requestCount = MOCK_SERVER.getRequestCount();
+
+        assertEquals("my very secure value", client.decrypt(properties).get("my.secret"));
+        assertEquals(requestCount + 2, MOCK_SERVER.getRequestCount());
+
+        MOCK_SERVER.takeRequest(); // dequeue requests
+        MOCK_SERVER.takeRequest();
+    }
+
+    @Test
+    void testVaultClientRoutesReadsAroundAnUnreachableNode() throws IOException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockResponseBody = "{ \"data\": {\"plaintext\": \"c29tZXRoaW5nIHZlcnkgc2VjcmV0\" } }";
+        var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v1:YQ==\" } }";
+        URL unreachable;
+
+        try (var socket = new ServerSocket(0)) {
+            unreachable = URI.create("http://localhost:" + socket.getLocalPort()).toURL();
+        }
+
+        var client = createRetryingClient(url, 1).readHosts(List.of(unreachable)).build();
+        var requestCount = MOCK_SERVER.getRequestCount();
+
+        for (int i = 0; i < 5; i++) {
+            MOCK_SERVER.enqueue(new MockResponse().setBody(mockResponseBody));
+            assertArrayEquals("something very secret".toCharArray(), client.decrypt("vault:v1:YQ==".toCharArray()));
+            assertEquals("/v1/transit/project_name/decrypt/appkey", MOCK_SERVER.takeRequest().getPath());
+        }
+
+        // encryption is never routed to a read host, retrying is not needed
+        var writingClient = createRetryingClient(url, 1).readHosts(List.of(unreachable)).retryPolicy(RetryPolicy.none()).build();
+
+        for (int i = 0; i < 5; i++) {
+            MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+            assertEquals("vault:v1:YQ==", String.copyValueOf(writingClient.encrypt("some test".getBytes())));
+            MOCK_SERVER.takeRequest();
+        }
+
+        assertEquals(requestCount + 10, MOCK_SERVER.getRequestCount());
+    }
+
+    @Test
+    void testVaultClientBacksOffWhenThrottled() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockResponseBody = "{ \"data\": {\"plaintext\": \"c29tZXRoaW5nIHZlcnkgc2VjcmV0\" } }";
+        var limiter = ConcurrencyLimiter.builder().initialLimit(4).build();
+
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockResponseBody));
+
+        var client = createRetryingClient(url, 1).concurrencyLimiter(limiter).build();
+
+        assertArrayEquals("something very secret".toCharArray(), client.decrypt("vault:v1:YQ==".toCharArray()));
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        MOCK_SERVER.takeRequest(); // dequeue requests
+        MOCK_SERVER.takeRequest();
+    }
+
+    @Test
+    void testVaultClientGathersConcurrentDecryptsInOneBatch() throws MalformedURLException, InterruptedException, ExecutionException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var batchBody = "{ \"data\": {\"batch_results\": [{\"plaintext\": \"YQ==\"}, {\"plaintext\": \"Yg==\"}, {\"error\": \"invalid ciphertext\"}] } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(batchBody));
+
+        var client = VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .batchSize(10)
+                .microBatchWindow(Duration.ofMillis(50))
+                .build();
+
+        var first = client.decryptAsync("vault:v1:YQ==".toCharArray());
+        var second = client.decryptAsync("vault:v1:Yg==".toCharArray());
+        var third = client.decryptAsync("vault:v1:Yw==".toCharArray());
+
+        assertArrayEquals("a".toCharArray(), first.get());
+        assertArrayEquals("b".toCharArray(), second.get());
+        assertInstanceOf(VaultException.class, assertThrows(ExecutionException.class, third::get).getCause());
+
+        var request = MOCK_SERVER.takeRequest();
+        assertEquals("/v1/transit/project_name/decrypt/appkey", request.getPath());
+        assertTrue(request.getBody().readUtf8().contains("batch_input"));
+    }
+
+    @Test
+    void testVaultClientRetriesFailedItemsOfAMicroBatch() throws MalformedURLException, InterruptedException, ExecutionException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var batchBody = "{ \"data\": {\"batch_results\": [{\"plaintext\": \"YQ==\"}, {\"error\": \"internal error\"}, {\"error\": \"invalid ciphertext\"}] } }";
+        var retryBody = "{ \"data\": {\"batch_results\": [{\"plaintext\": \"Yg==\"}] } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(batchBody));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(retryBody));
+
+        var client = createRetryingClient(url, 10).microBatchWindow(Duration.ofMillis(50)).build();
+
+        var first = client.decryptAsync("vault:v1:YQ==".toCharArray());
+        var second = client.decryptAsync("vault:v1:Yg==".toCharArray());
+        var third = client.decryptAsync("vault:v1:Yw==".toCharArray());
+
+        assertArrayEquals("a".toCharArray(), first.get());
+        assertArrayEquals("b".toCharArray(), second.get());
+        assertInstanceOf(VaultException.class, assertThrows(ExecutionException.class, third::get).getCause());
+
+        MOCK_SERVER.takeRequest(); // the whole batch
+        var retry = MOCK_SERVER.takeRequest().getBody().readUtf8();
+
+        // only the transient failure is sent again
+        assertEquals(1, retry.split("ciphertext", -1).length - 1, retry);
+        assertTrue(retry.contains("vault:v1:Yg=="), retry);
+    }
+
+    @Test
+    void testVaultClientGathersConcurrentEncryptsWithOnlyAWindow() throws MalformedURLException, InterruptedException, ExecutionException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var batchBody = "{ \"data\": {\"batch_results\": [{\"ciphertext\": \"vault:v1:YQ==\"}, {\"ciphertext\": \"vault:v1:Yg==\"}] } }";
+        var requestCount = MOCK_SERVER.getRequestCount();
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(batchBody));
+
+        // the batch size of the client stays 1, micro batches have their own
+        var client = VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .microBatchWindow(Duration.ofMillis(50))
+                .build();
+
+        var first = client.encryptAsync("a".getBytes());
+        var second = client.encryptAsync("b".getBytes());
+
+        assertArrayEquals("vault:v1:YQ==".toCharArray(), first.get());
+        assertArrayEquals("vault:v1:Yg==".toCharArray(), second.get());
+        assertEquals(requestCount + 1, MOCK_SERVER.getRequestCount());
+        assertTrue(MOCK_SERVER.takeRequest().getBody().readUtf8().contains("batch_input"));
+    }
+
+    @Test
+    void testVaultClientSharesConcurrentDecryptsOfTheSameCiphertext() throws MalformedURLException, InterruptedException, ExecutionException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockResponseBody = "{ \"data\": {\"plaintext\": \"c29tZXRoaW5nIHZlcnkgc2VjcmV0\" } }";
+        var requestCount = MOCK_SERVER.getRequestCount();
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockResponseBody).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+
+        var client = createClient(url);
+        var first = client.decryptAsync("vault:v1:YQ==".toCharArray());
+        var second = client.decryptAsync("vault:v1:YQ==".toCharArray());
+
+        assertArrayEquals("something very secret".toCharArray(), first.get());
+        assertArrayEquals("something very secret".toCharArray(), second.get());
+        assertEquals(requestCount + 1, MOCK_SERVER.getRequestCount());
+
+        MOCK_SERVER.takeRequest(); // dequeue request
+    }
+
+    @Test
+    void testVaultClientRequestTimeout() throws MalformedURLException, InterruptedException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==\" } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody).setHeadersDelay(2, TimeUnit.SECONDS));
+
+        var client = VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .requestTimeout(Duration.ofMillis(200))
+                .build();
+
+        assertThrows(VaultException.class, () -> client.encrypt("some test".getBytes()));
+
+        MOCK_SERVER.takeRequest(); // dequeue request
+    }
+
+    @Test
+    void testVaultClientParallelDecryptPropertiesNamesFailingKey() throws MalformedURLException, InterruptedException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"OWVlYWUwMjU5NWQzMWRmNmFmYjhkZDlhMDI4NzllNzU0YzA4NTA3MTYzYzFhNDg0Y2IzY2FkMjUwYWE2MjhhZg==\" } }";
+
+        var client = VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .parallelism(4)
+                .build();
+        var properties = createGruntrProperties();
+
+        properties.put("my.secret", "vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(sha3ResultCheck));
+        MOCK_SERVER.enqueue(new MockResponse().setResponseCode(400).setBody(""));
+
+        var exception = assertThrows(VaultException.class, () -> client.decrypt(properties));
+        assertTrue(exception.getMessage().contains("my.secret"));
+
+        MOCK_SERVER.takeRequest(); // dequeue requests
+        MOCK_SERVER.takeRequest();
+    }
+
+    @Test
+    void testVaultClientHttp2FallsBackToHttp11ForPlainHttp() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==\" } }";
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+
+        var client = VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .httpVersion(HttpClient.Version.HTTP_2)
+                .build();
+
+        assertEquals("vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==",
+                String.copyValueOf(client.encrypt("some test".getBytes())));
+
+        var mockRequest = MOCK_SERVER.takeRequest();
+        assertNull(mockRequest.getHeader("Upgrade"));
+    }
+
+    @Test
+    void testVaultClientHttp2FallsBackToHttp11OnProtocolErrors() throws IOException, GeneralSecurityException, VaultException {
+        var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v1:YQ==\" } }";
+
+        try (var server = createHttp2Server()) {
+            var url = URI.create("https://localhost:" + server.getPort()).toURL();
+            var client = (VaultTransitRestClientImpl) createHttp2Client(url);
+
+            // Protocol error (0x1), the request is sent again over HTTP/1.1
+            server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.RESET_STREAM_AT_START).setHttp2ErrorCode(1));
+            server.enqueue(new MockResponse().setBody(mockBody));
+
+            assertEquals(HttpClient.Version.HTTP_2, client.transportVersion(url));
+            assertEquals("vault:v1:YQ==", String.copyValueOf(client.encrypt("a".getBytes())));
+            assertEquals(HttpClient.Version.HTTP_1_1, client.transportVersion(url));
+            assertEquals(2, server.getRequestCount());
+        }
+    }
+
+    @Test
+    void testVaultClientHttp2IsKeptOnNetworkErrors() throws IOException, GeneralSecurityException, VaultException {
+        var mockBody = "{ \"data\": {\"ciphertext\": \"vault:v1:YQ==\" } }";
+
+        try (var server = createHttp2Server()) {
+            var url = URI.create("https://localhost:" + server.getPort()).toURL();
+            var client = (VaultTransitRestClientImpl) createHttp2Client(url);
+
+            server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+            server.enqueue(new MockResponse().setBody(mockBody));
+
+            assertThrows(VaultException.class, () -> client.encrypt("a".getBytes()));
+            assertEquals(HttpClient.Version.HTTP_2, client.transportVersion(url));
+            assertEquals("vault:v1:YQ==", String.copyValueOf(client.encrypt("a".getBytes())));
+        }
+    }
+
+    @Test
+    void testVaultClientHttp2IsKeptOnRefusedStreams() throws IOException, GeneralSecurityException {
+        try (var server = createHttp2Server()) {
+            var url = URI.create("https://localhost:" + server.getPort()).toURL();
+            var client = (VaultTransitRestClientImpl) createHttp2Client(url);
+
+            // Refused stream (0x7), Vault speaks HTTP/2 but did not process the request
+            server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.RESET_STREAM_AT_START).setHttp2ErrorCode(7));
+
+            assertThrows(VaultException.class, () -> client.encrypt("a".getBytes()));
+            assertEquals(HttpClient.Version.HTTP_2, client.transportVersion(url));
+            assertEquals(1, server.getRequestCount());
+        }
+    }
+
+    private MockWebServer createHttp2Server() {
+        var server = new MockWebServer();
+
+        server.useHttps(LOCALHOST_CERTIFICATES.sslSocketFactory(), false);
+        server.setProtocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1));
+
+        return server;
+    }
+
+    /**
+     * The JDK HTTP client takes the default SSL context when it's created, it's only replaced while the client is built.
+     */
+    private VaultTransitRestClient createHttp2Client(URL url) throws GeneralSecurityException {
+        var trusting = SSLContext.getInstance("TLS");
+        trusting.init(null, new TrustManager[]{LOCALHOST_CERTIFICATES.trustManager()}, null);
+
+        var defaultContext = SSLContext.getDefault();
+        SSLContext.setDefault(trusting);
+
+        try {
+            return VaultTransitRestClient
+                    .builder()
+                    .host(url)
+                    .transitPath("transit/project_name")
+                    .transitKeyName("appkey")
+                    .token(VaultToken.of("root"))
+                    .httpVersion(HttpClient.Version.HTTP_2)
+                    .build();
+        } finally {
+            SSLContext.setDefault(defaultContext);
+        }
+    }
+
+    @Test
+    void testVaultClientDecryptPropertiesUsesCache() throws MalformedURLException, InterruptedException, VaultException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+        var sha3ResultCheck = "{ \"data\": {\"plaintext\": \"OWVlYWUwMjU5NWQzMWRmNmFmYjhkZDlhMDI4NzllNzU0YzA4NTA3MTYzYzFhNDg0Y2IzY2FkMjUwYWE2MjhhZg==\" } }";
+        var mockBody = "{ \"data\": {\"plaintext\": \"bXkgdmVyeSBzZWN1cmUgdmFsdWU=\" } }";
+
+        var client = VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .decryptionCache(DecryptionCache.builder().build())
+                .build();
+        var properties = createGruntrProperties();
+
+        properties.put("my.encryption", "vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==");
+
+        MOCK_SERVER.enqueue(new MockResponse().setBody(sha3ResultCheck));
+        MOCK_SERVER.enqueue(new MockResponse().setBody(mockBody));
+
+        assertEquals("my very secure value", client.decrypt(properties).get("my.encryption"));
+        MOCK_SERVER.takeRequest(); // dequeue requests
+        MOCK_SERVER.takeRequest();
+
+        var requestCount = MOCK_SERVER.getRequestCount();
+
+        assertEquals("my very secure value", client.decrypt(properties).get("my.encryption"));
+        assertEquals(requestCount, MOCK_SERVER.getRequestCount());
+    }
+
+    @Test
+    void testVaultClientDoesNotCacheValuesOfAnInvalidFile() throws IOException, ExecutionException, InterruptedException {
+        var tamperedResult = "{ \"data\": {\"plaintext\": \"NDEyZTU1NWZjYmZjNDNmMmUxYWIyZWQzZDNiM2JmNWNjMDIwZGM0YWQwYmVkYjRlYzg4OTIzYzcxNGUwODg4Yg==\" } }";
+        var mockBody = "{ \"data\": {\"plaintext\": \"bXkgdmVyeSBzZWN1cmUgdmFsdWU=\" } }";
+        var ciphertext = "vault:v2:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==";
+        var valueDecrypted = new CountDownLatch(1);
+
+        try (var server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                    if (request.getBody().readUtf8().contains("vault:v1:9eeae")) {
+                        // the header only fails validation once the value was decrypted
+                        return valueDecrypted.await(5, TimeUnit.SECONDS)
+                                ? new MockResponse().setBody(tamperedResult)
+                                : new MockResponse().setResponseCode(500);
+                    }
+
+                    valueDecrypted.countDown();
+
+                    return new MockResponse().setBody(mockBody);
+                }
+            });
+
+            var client = VaultTransitRestClient.builder()
+                    .host(server.url("/").url())
+                    .transitPath("transit/project_name")
+                    .transitKeyName("appkey")
+                    .token(VaultToken.of("root"))
+                    .decryptionCache(DecryptionCache.builder().build())
+                    .validateConcurrently(true)
+                    .build();
+            var properties = createGruntrProperties();
+            properties.put("my.encryption", ciphertext);
+
+            assertThrows(IllegalStateException.class, () -> client.decrypt(properties));
+            assertEquals(2, server.getRequestCount());
+
+            assertEquals("my very secure value", String.valueOf(client.decryptAsync(ciphertext.toCharArray()).get()));
+            assertEquals(3, server.getRequestCount());
+        }
+    }
+
+    @Test
+    void testVaultClientRejectsInvalidBatchSize() throws MalformedURLException {
+        var url = URI.create("http://localhost:" + MOCK_SERVER.getPort()).toURL();
+
+        assertThrows(IllegalArgumentException.class, () -> createClient(url, 0));
+    }
+
+    private VaultTransitRestClient createClient(URL url) {
+        return VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .build();
+    }
+
+    private VaultTransitRestClient createClient(URL url, int batchSize) {
+        return VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .batchSize(batchSize)
+                .build();
+    }
+
+    private VaultTransitRestClient.Builder createRetryingClient(URL url, int batchSize) {
+        return VaultTransitRestClient
+                .builder()
+                .host(url)
+                .transitPath("transit/project_name")
+                .transitKeyName("appkey")
+                .token(VaultToken.of("root"))
+                .batchSize(batchSize)
+                .retryPolicy(RetryPolicy.builder().maxAttempts(3).baseDelay(Duration.ofMillis(1)).maxDelay(Duration.ofMillis(10)).build());
     }
 
     private Properties createGruntrProperties() {
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JmxVaultMetricsTest {
+    @Test
+    void testMetricsArePublishedPerOperation() throws JMException {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var objectName = new ObjectName("io.acuz.gruntr:type=VaultMetrics,name=\"test\",operation=\"decrypt\"");
+
+        try (var metrics = JmxVaultMetrics.create("test")) {
+            assertNull(metrics.get("decrypt"));
+
+            metrics.onResponse("decrypt", 10, 500, 400, 200, Duration.ofMillis(2).toNanos());
+            metrics.onResponse("decrypt", 1, 50, 40, 429, Duration.ofMillis(4).toNanos());
+            metrics.onFailure("decrypt", 1, 50, new IOException("connection refused"), Duration.ofMillis(1).toNanos());
+
+            assertEquals(3L, server.getAttribute(objectName, "Calls"));
+            assertEquals(12L, server.getAttribute(objectName, "Values"));
+            assertEquals(600L, server.getAttribute(objectName, "BytesOut"));
+            assertEquals(440L, server.getAttribute(objectName, "BytesIn"));
+            assertEquals(1L, server.getAttribute(objectName, "Responses2xx"));
+            assertEquals(1L, server.getAttribute(objectName, "Responses429"));
+            assertEquals(0L, server.getAttribute(objectName, "Responses4xx"));
+            assertEquals(1L, server.getAttribute(objectName, "Failures"));
+            assertEquals(4_000.0, (double) server.getAttribute(objectName, "LatencyMax"), 0.001);
+
+            server.invoke(objectName, "reset", null, null);
+
+            assertEquals(0L, metrics.get("decrypt").getCalls());
+        }
+
+        assertFalse(server.isRegistered(objectName));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void testBucketsCoverEveryValue() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            var index = LatencyHistogram.indexOf(value);
+
+            assertTrue(LatencyHistogram.highestValueOf(index) >= value, "value " + value);
+            assertTrue(0 == index || LatencyHistogram.highestValueOf(index - 1) < value, "value " + value);
+        }
+    }
+
+    @Test
+    void testPercentilesAreWithinBucketPrecision() {
+        var histogram = new LatencyHistogram();
+
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(5_000_500, histogram.getMean(), 0.1);
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+
+        assertWithin(5_000_000, histogram.getValueAtPercentile(50));
+        assertWithin(9_900_000, histogram.getValueAtPercentile(99));
+        assertWithin(9_990_000, histogram.getValueAtPercentile(99.9));
+    }
+
+    @Test
+    void testReset() {
+        var histogram = new LatencyHistogram();
+
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.07, "expected about " + expected + ", got " + actual);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VaultTransitKeyTest {
+    @Test
+    void testVersionOf() {
+        assertEquals(1, VaultTransitKey.versionOf("vault:v1:abc"));
+        assertEquals(42, VaultTransitKey.versionOf("vault:v42:abc"));
+        assertEquals(-1, VaultTransitKey.versionOf("vault:v:abc"));
+        assertEquals(-1, VaultTransitKey.versionOf("vault:vx:abc"));
+        assertEquals(-1, VaultTransitKey.versionOf("vault:v1"));
+        assertEquals(-1, VaultTransitKey.versionOf("vault:v99999999999:abc"));
+        assertEquals(-1, VaultTransitKey.versionOf("plain text"));
+        assertEquals(-1, VaultTransitKey.versionOf(null));
+    }
+
+    @Test
+    void testIsCurrentAndDecryptable() {
+        var key = VaultTransitKey.of(3, 2);
+
+        assertTrue(key.isCurrent("vault:v3:abc"));
+        assertFalse(key.isCurrent("vault:v2:abc"));
+        assertTrue(key.isDecryptable("vault:v2:abc"));
+        assertFalse(key.isDecryptable("vault:v1:abc"));
+        assertFalse(key.isDecryptable("plain text"));
+    }
+
+    @Test
+    void testRejectsInvalidVersions() {
+        assertThrows(IllegalArgumentException.class, () -> VaultTransitKey.of(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> VaultTransitKey.of(1, 2));
+    }
+}
@@ -34,6 +34,10 @@ abstract class AbstractCommand {
     }
 
     protected VaultTransitRestClient createClient(Properties properties) {
+        return clientBuilder(properties).build();
+    }
+
+    protected VaultTransitRestClient.Builder clientBuilder(Properties properties) {
         String vaultTransitKey = properties.getProperty(GRUNTR__VAULT_TRANSIT_KEY, this.cliProperties.getHcTransitKeyName());
         String vaultHost = properties.getProperty(GRUNTR__VAULT_HOST, this.cliProperties.getHcServer().toExternalForm());
         String vaultTransitPath = properties.getProperty(GRUNTR__VAULT_TRANSIT_PATH, this.cliProperties.getHcTransitPath());
@@ -43,8 +47,7 @@ abstract class AbstractCommand {
                     .host(new URL(vaultHost))
                     .token(this.cliProperties.getHcToken())
                     .transitPath(vaultTransitPath)
-                    .transitKeyName(vaultTransitKey)
-                    .build();
+                    .transitKeyName(vaultTransitKey);
         } catch (MalformedURLException e) {
             throw new RuntimeException(e);
         }
@@ -29,6 +29,8 @@ enum CliParameterName {
     HC_VAULT_HOST("--hc-vault-server", "-h"),
     HC_VAULT_TRANSIT_PATH("--hc-transit-path"),
     HC_VAULT_TRANSIT_KEY("--hc-transit-key"),
+    DEDUPLICATE("--deduplicate"),
+    PREVIOUS_FILE("--previous", "-p"),
     ;
 
     private static final Set<CliParameterName> ALL = Set.of(CliParameterName.values());
@@ -19,12 +19,14 @@ package io.acuz.gruntr.cli;
 import io.acuz.gruntr.util.VaultValidationUtil;
 import io.acuz.gruntr.vault.model.VaultToken;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayDeque;
+import java.util.Properties;
 
 import static java.util.Objects.requireNonNull;
 
@@ -35,7 +37,8 @@ final class CliProperties {
     private final URL hcServer;
     private final String hcTransitPath;
     private final String hcTransitKeyName;
-
+    private final boolean deduplicate;
+    private final Properties previousProperties;
 
     private CliProperties(Builder builder) {
         try {
@@ -49,6 +52,8 @@ final class CliProperties {
         this.inputFilePath = builder.inputFilePath;
         this.outputFilePath = builder.outputFilePath;
         this.hcToken = builder.hcToken;
+        this.deduplicate = builder.deduplicate;
+        this.previousProperties = builder.previousProperties;
 
         if (null == builder.keys) {
             EncryptionKeys.register(EncryptionKeys.ALL);
@@ -93,6 +98,18 @@ final class CliProperties {
         return hcTransitKeyName;
     }
 
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * @return the previously encrypted properties, empty when the previous file doesn't exist yet, null when no
+     * previous file was given
+     */
+    public Properties getPreviousProperties() {
+        return previousProperties;
+    }
+
 
     static final class Builder {
 
@@ -104,6 +121,9 @@ final class CliProperties {
         private String hcTransitPath;
         private String hcTransitKeyName;
         private String keys;
+        private boolean deduplicate;
+        private Path previousFilePath;
+        private Properties previousProperties;
 
         Builder() {
             //no-op
@@ -142,6 +162,11 @@ final class CliProperties {
             VaultValidationUtil.checkVaultPathComponent(this.hcTransitPath);
             VaultValidationUtil.checkVaultPathComponent(this.hcTransitKeyName);
 
+            if (null != this.previousFilePath) {
+                // loaded before the output file is cleaned up, as it's usually the same file
+                this.previousProperties = loadPreviousProperties(this.previousFilePath);
+            }
+
             if (null != this.outputFilePath) {
                 var file = this.outputFilePath.toFile();
 
@@ -167,6 +192,21 @@ final class CliProperties {
             }
         }
 
+        private static Properties loadPreviousProperties(Path path) {
+            var properties = new Properties();
+            var file = path.toFile();
+
+            if (file.isFile()) {
+                try (var fileInputStream = new FileInputStream(file)) {
+                    properties.load(fileInputStream);
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to read previous file " + path, e);
+                }
+            }
+
+            return properties;
+        }
+
         private void prepare() {
             while (!this.params.isEmpty()) {
                 var name = CliParameterName.get(this.params.remove());
@@ -194,6 +234,12 @@ final class CliProperties {
                         case HC_VAULT_TRANSIT_KEY:
                             this.hcTransitKeyName = this.params.remove();
                             break;
+                        case DEDUPLICATE:
+                            this.deduplicate = true;
+                            break;
+                        case PREVIOUS_FILE:
+                            this.previousFilePath = Paths.get(this.params.remove());
+                            break;
                     }
                 }
             }
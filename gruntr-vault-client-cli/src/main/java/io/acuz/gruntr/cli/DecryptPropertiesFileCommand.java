@@ -34,12 +34,10 @@ final class DecryptPropertiesFileCommand extends AbstractCommand implements Comm
 
     @Override
     public void run() {
-        var client = ClientImpl.builder()
+        try (var client = ClientImpl.builder()
                 .setPath(this.cliProperties.getInputFilePath())
                 .setToken(this.cliProperties.getHcToken())
-                .build();
-
-        try {
+                .build()) {
             storeProperties(client.decryptProperties());
         } catch (IOException e) {
             throw new IllegalStateException(e);
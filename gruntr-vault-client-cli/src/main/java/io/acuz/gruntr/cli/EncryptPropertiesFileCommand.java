@@ -40,8 +40,13 @@ final class EncryptPropertiesFileCommand extends AbstractCommand implements Comm
             var originalProperties = new Properties();
             originalProperties.load(fileInputStream);
 
-            var vaultClient = createClient(originalProperties);
-            storeProperties(vaultClient.encrypt(originalProperties));
+            try (var vaultClient = clientBuilder(originalProperties).deduplicateValues(this.cliProperties.isDeduplicate()).build()) {
+                var previousProperties = this.cliProperties.getPreviousProperties();
+
+                storeProperties(null == previousProperties
+                        ? vaultClient.encrypt(originalProperties)
+                        : vaultClient.encrypt(originalProperties, previousProperties));
+            }
         } catch (IOException | VaultException e) {
             throw new IllegalStateException(e);
         }
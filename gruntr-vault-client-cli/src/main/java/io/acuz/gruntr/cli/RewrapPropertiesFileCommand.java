@@ -41,8 +41,10 @@ final class RewrapPropertiesFileCommand extends AbstractCommand implements Comma
             var properties = new Properties();
             properties.load(fileInputStream);
 
-            var client = createClient(properties);
-            storeProperties(client.rewrap(properties));
+            // values already encrypted with the latest key version are left as they are
+            try (var client = clientBuilder(properties).rewrapOnlyStale(true).build()) {
+                storeProperties(client.rewrap(properties));
+            }
         } catch (IOException | VaultException e) {
             throw new IllegalStateException(e);
         }
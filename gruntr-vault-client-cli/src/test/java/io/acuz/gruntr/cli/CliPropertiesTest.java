@@ -76,6 +76,8 @@ class CliPropertiesTest {
         assertEquals("transit/project_name", props.getHcTransitPath());
         assertEquals(Path.of("/tmp/application-encrypted.properties"), props.getInputFilePath());
         assertNull(props.getOutputFilePath());
+        assertFalse(props.isDeduplicate());
+        assertNull(props.getPreviousProperties());
         assertNotNull(EncryptionKeys.compile());
         assertEquals(".*(.*).*", EncryptionKeys.compile().pattern());
     }
@@ -96,7 +98,10 @@ class CliPropertiesTest {
                                         "--hc-transit-key",
                                         "appkey",
                                         "-k",
-                                        ":secrets,office")
+                                        ":secrets,office",
+                                        "--deduplicate",
+                                        "--previous",
+                                        "/tmp/gruntr-missing-previous.properties")
                         )
                 );
 
@@ -106,5 +111,8 @@ class CliPropertiesTest {
 
         assertNotNull(EncryptionKeys.compile());
         assertEquals(".*((secret|token|password)|office).*", EncryptionKeys.compile().pattern());
+        assertTrue(props.isDeduplicate());
+        assertNotNull(props.getPreviousProperties());
+        assertTrue(props.getPreviousProperties().isEmpty());
     }
 }
\ No newline at end of file
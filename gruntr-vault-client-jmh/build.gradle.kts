@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+plugins {
+    id("java")
+}
+
+repositories {
+    mavenCentral()
+}
+
+val jmhVersion: String by project
+val jacksonDatabindVersion: String by project
+
+dependencies {
+    implementation(project(":gruntr-vault-client-api"))
+    implementation(project(":gruntr-vault-client-test-fixtures"))
+    implementation("com.fasterxml.jackson.core:jackson-databind:${jacksonDatabindVersion}")
+    implementation("org.openjdk.jmh:jmh-core:${jmhVersion}")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:${jmhVersion}")
+}
+
+// ./gradlew :gruntr-vault-client-jmh:jmh -PjmhArgs="PropertiesBenchmark -p keys=100 -p latencyMillis=2"
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks, with the GC profiler"
+    dependsOn(tasks.classes)
+
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args = listOf("-prof", "gc", "-rf", "json", "-rff", layout.buildDirectory.file("jmh-result.json").get().asFile.path) +
+            (project.findProperty("jmhArgs") as String? ?: "").split(" ").filter { it.isNotBlank() }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.jmh;
+
+import io.acuz.gruntr.cli.EncryptionKeys;
+import io.acuz.gruntr.util.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The work the client does locally for every file: selecting the keys to encrypt and hashing the gruntr__ header.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalBenchmark {
+    private Pattern keysToEncrypt;
+
+    @Setup
+    public void setUp() {
+        EncryptionKeys.register(EncryptionKeys.SECRETS);
+        keysToEncrypt = EncryptionKeys.compile();
+    }
+
+    @Benchmark
+    public Pattern compileEncryptionKeys() {
+        return EncryptionKeys.compile();
+    }
+
+    @Benchmark
+    public boolean matchEncryptionKey() {
+        return keysToEncrypt.matcher("spring.datasource.password").find();
+    }
+
+    @Benchmark
+    public byte[] sha3digest() throws NoSuchAlgorithmException {
+        return DigestUtils.sha3digest("https://vault.example.com:8200", "transit/project_name", "appkey");
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.jmh;
+
+import io.acuz.gruntr.emulator.LatencyDistribution;
+import io.acuz.gruntr.emulator.VaultTransitEmulator;
+import io.acuz.gruntr.vault.VaultTransitRestClient;
+import io.acuz.gruntr.vault.exception.VaultException;
+import io.acuz.gruntr.vault.model.VaultToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole properties files through the client, against a {@link VaultTransitEmulator}. The file size, the batch size and
+ * the parallelism are parameters, e.g. {@code -p keys=10000 -p batchSize=250 -p parallelism=4}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class PropertiesBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int keys;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    @Param({"1"})
+    public int parallelism;
+
+    @Param({"0"})
+    public long latencyMillis;
+
+    private VaultTransitEmulator server;
+    private VaultTransitRestClient client;
+    private Properties plaintextProperties;
+    private Properties encryptedProperties;
+
+    @Setup
+    public void setUp() throws IOException, VaultException {
+        server = VaultTransitEmulator.builder()
+                .latency(LatencyDistribution.fixed(Duration.ofMillis(latencyMillis)))
+                .build();
+        client = VaultTransitRestClient.builder()
+                .host(server.getUrl())
+                .token(VaultToken.of("root"))
+                .transitPath("transit/benchmark")
+                .transitKeyName("appkey")
+                .batchSize(batchSize)
+                .parallelism(parallelism)
+                .build();
+
+        plaintextProperties = new Properties();
+
+        for (int i = 0; i < keys; i++) {
+            plaintextProperties.setProperty("application.secret." + i, "my very secure value " + i);
+        }
+
+        encryptedProperties = client.encrypt(plaintextProperties);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Properties encrypt() throws VaultException {
+        return client.encrypt(plaintextProperties);
+    }
+
+    @Benchmark
+    public Properties decrypt() throws VaultException {
+        return client.decrypt(encryptedProperties);
+    }
+
+    @Benchmark
+    public Properties rewrap() throws VaultException {
+        return client.rewrap(encryptedProperties);
+    }
+}
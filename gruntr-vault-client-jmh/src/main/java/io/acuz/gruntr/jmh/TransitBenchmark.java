@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.jmh;
+
+import io.acuz.gruntr.emulator.LatencyDistribution;
+import io.acuz.gruntr.emulator.VaultTransitEmulator;
+import io.acuz.gruntr.vault.VaultTransitRestClient;
+import io.acuz.gruntr.vault.exception.VaultException;
+import io.acuz.gruntr.vault.model.VaultToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single value round trips through the client, against a {@link VaultTransitEmulator}. Micro batching only pays off
+ * with concurrent callers, run it with more threads, e.g. {@code -t 32 -p microBatchWindowMicros=0,1000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class TransitBenchmark {
+    @Param({"0"})
+    public long latencyMillis;
+
+    @Param({"0"})
+    public long microBatchWindowMicros;
+
+    private VaultTransitEmulator server;
+    private VaultTransitRestClient client;
+    private byte[] plaintext;
+    private char[] ciphertext;
+
+    @Setup
+    public void setUp() throws IOException, VaultException {
+        server = VaultTransitEmulator.builder()
+                .latency(LatencyDistribution.fixed(Duration.ofMillis(latencyMillis)))
+                .build();
+        var builder = VaultTransitRestClient.builder()
+                .host(server.getUrl())
+                .token(VaultToken.of("root"))
+                .transitPath("transit/benchmark")
+                .transitKeyName("appkey");
+
+        if (microBatchWindowMicros > 0) {
+            builder.microBatchWindow(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(microBatchWindowMicros)));
+        }
+
+        client = builder.build();
+
+        plaintext = "my very secure value".getBytes(StandardCharsets.UTF_8);
+        ciphertext = client.encrypt(plaintext.clone());
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public char[] encrypt() throws VaultException {
+        return client.encrypt(plaintext.clone());
+    }
+
+    @Benchmark
+    public char[] decrypt() throws VaultException {
+        return client.decrypt(ciphertext);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.vault;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.acuz.gruntr.util.ArrayUtils;
+import io.acuz.gruntr.vault.exception.VaultException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing transit request bodies and reading response bodies, for a single value and for a batch of
+ * {@code batchSize} values. It lives in the package of the (package-private) {@link TransitJsonCodec}.
+ * <p>
+ * The {@code legacy...} benchmarks do what the client did before the codec: {@link String#format} request bodies
+ * sent as Strings, and responses read as Strings into an {@link ObjectMapper} tree. They are kept as the baseline the
+ * allocation rate of the codec is compared with, run it with the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    private static final String CIPHERTEXT = "vault:v1:pN9yeht0umD/TqT3tSpRGUoLUuTYazDPgxj/dkOJTULzFCv2vovHgbhBfh99EmD+wQ==";
+
+    @Param({"100"})
+    public int batchSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private TransitJsonCodec codec;
+    private byte[] plaintext;
+    private List<byte[]> ciphertexts;
+    private List<char[]> legacyCiphertexts;
+    private byte[] decryptResponse;
+    private byte[] batchResponse;
+
+    @Setup
+    public void setUp() {
+        codec = new TransitJsonCodec(new JsonFactory());
+        plaintext = "jdbc:postgresql://db.example.com:5432/app".getBytes(StandardCharsets.UTF_8);
+        ciphertexts = new ArrayList<>(batchSize);
+        legacyCiphertexts = new ArrayList<>(batchSize);
+
+        var encodedPlaintext = Base64.getEncoder().encodeToString(plaintext);
+        var results = new StringBuilder();
+
+        for (int i = 0; i < batchSize; i++) {
+            ciphertexts.add(CIPHERTEXT.getBytes(StandardCharsets.UTF_8));
+            legacyCiphertexts.add(CIPHERTEXT.toCharArray());
+            results.append(0 == i ? "" : ",").append("{\"plaintext\": \"").append(encodedPlaintext).append("\"}");
+        }
+
+        decryptResponse = ("{\"request_id\": \"b7e7a8f0\", \"lease_id\": \"\", \"renewable\": false, \"lease_duration\": 0, "
+                + "\"data\": {\"plaintext\": \"" + encodedPlaintext + "\"}, \"wrap_info\": null, \"warnings\": null, \"auth\": null}")
+                .getBytes(StandardCharsets.UTF_8);
+        batchResponse = ("{\"request_id\": \"b7e7a8f0\", \"data\": {\"batch_results\": [" + results + "]}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeEncryptRequest() throws IOException {
+        return codec.writeRequest(VaultTransitEndpoint.ENCRYPT, plaintext);
+    }
+
+    @Benchmark
+    public char[] readDecryptResponse() throws IOException, VaultException {
+        return codec.readResponse(VaultTransitEndpoint.DECRYPT, decryptResponse);
+    }
+
+    @Benchmark
+    public byte[] writeBatchRequest() throws IOException {
+        return codec.writeBatchRequest(VaultTransitEndpoint.DECRYPT, ciphertexts);
+    }
+
+    @Benchmark
+    public List<BatchItem> readBatchResponse() throws IOException, VaultException {
+        return codec.readBatchResponse(VaultTransitEndpoint.DECRYPT, batchResponse, batchSize);
+    }
+
+    @Benchmark
+    public byte[] legacyWriteEncryptRequest() {
+        var value = Base64.getEncoder().encodeToString(plaintext).toCharArray();
+        var data = String.format("{\"%s\": \"%s\"}", VaultTransitEndpoint.ENCRYPT.getInputFieldName(), String.copyValueOf(value));
+
+        // what BodyPublishers.ofString sends
+        return data.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public char[] legacyReadDecryptResponse() throws IOException {
+        // what BodyHandlers.ofString received
+        var data = mapper.readTree(new String(decryptResponse, StandardCharsets.UTF_8)).get("data");
+        var output = data.get(VaultTransitEndpoint.DECRYPT.getOutputFieldName()).asText().toCharArray();
+
+        return ArrayUtils.toCharArray(Base64.getDecoder().decode(String.copyValueOf(output)));
+    }
+
+    @Benchmark
+    public byte[] legacyWriteBatchRequest() {
+        var endpoint = VaultTransitEndpoint.DECRYPT;
+        var data = new StringBuilder()
+                .append("{\"").append(endpoint.getBatchInputFieldName()).append("\": [");
+
+        for (int i = 0; i < legacyCiphertexts.size(); i++) {
+            if (i > 0) {
+                data.append(',');
+            }
+
+            data.append("{\"").append(endpoint.getInputFieldName()).append("\": \"")
+                    .append(legacyCiphertexts.get(i))
+                    .append("\"}");
+        }
+
+        data.append("]}");
+
+        return data.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<char[]> legacyReadBatchResponse() throws IOException {
+        var endpoint = VaultTransitEndpoint.DECRYPT;
+        var batchResults = mapper.readTree(new String(batchResponse, StandardCharsets.UTF_8)).get("data").get(endpoint.getBatchOutputFieldName());
+        var items = new ArrayList<char[]>(batchSize);
+
+        for (JsonNode batchResult : batchResults) {
+            var output = batchResult.get(endpoint.getOutputFieldName()).asText();
+
+            items.add(ArrayUtils.toCharArray(Base64.getDecoder().decode(output)));
+        }
+
+        return items;
+    }
+}
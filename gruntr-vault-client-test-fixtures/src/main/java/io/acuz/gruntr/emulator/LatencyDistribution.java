@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.emulator;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * The time the {@link VaultTransitEmulator} waits before answering a request.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+    /**
+     * @param random the random generator of the emulator
+     * @return the latency of the next request, in nanoseconds
+     */
+    long nextNanos(Random random);
+
+    static LatencyDistribution none() {
+        return random -> 0;
+    }
+
+    static LatencyDistribution fixed(Duration latency) {
+        var nanos = latency.toNanos();
+
+        return random -> nanos;
+    }
+
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        var minNanos = min.toNanos();
+        var range = max.toNanos() - minNanos;
+
+        if (range < 0) {
+            throw new IllegalArgumentException("Maximum latency should not be less than the minimum latency");
+        }
+
+        return random -> minNanos + (0 == range ? 0 : (long) (random.nextDouble() * range));
+    }
+
+    static LatencyDistribution exponential(Duration mean) {
+        var meanNanos = mean.toNanos();
+
+        return random -> (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+    }
+
+    /**
+     * A long-tailed distribution, typical for services: most requests take about the median, a few take many times
+     * longer.
+     *
+     * @param median the median latency
+     * @param sigma  the standard deviation of the underlying normal distribution, e.g. 0.5
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma) {
+        var medianNanos = median.toNanos();
+
+        return random -> (long) (medianNanos * Math.exp(sigma * random.nextGaussian()));
+    }
+}
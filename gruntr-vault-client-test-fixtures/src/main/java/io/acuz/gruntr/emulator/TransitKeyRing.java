@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.emulator;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A named transit key with its versions, an aes256-gcm96 key in Vault terms. Values are encrypted with the latest
+ * version and written as {@code vault:v<version>:<base64(nonce | ciphertext | tag)>}.
+ */
+final class TransitKeyRing {
+    private static final String VAULT_PREFIX = "vault:v";
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int KEY_LENGTH = 32;
+
+    private final String name;
+    private final SecureRandom random;
+    private final List<byte[]> versions = new ArrayList<>();
+    private final List<Instant> creationTimes = new ArrayList<>();
+    private int minDecryptionVersion = 1;
+
+    TransitKeyRing(String name, SecureRandom random) {
+        this.name = name;
+        this.random = random;
+
+        rotate();
+    }
+
+    synchronized void rotate() {
+        var key = new byte[KEY_LENGTH];
+        random.nextBytes(key);
+
+        versions.add(key);
+        creationTimes.add(Instant.now());
+    }
+
+    synchronized void setMinDecryptionVersion(int version) {
+        if (version < 1 || version > versions.size()) {
+            throw new IllegalArgumentException("Invalid minimum decryption version " + version);
+        }
+
+        this.minDecryptionVersion = version;
+    }
+
+    synchronized int getLatestVersion() {
+        return versions.size();
+    }
+
+    synchronized int getMinDecryptionVersion() {
+        return minDecryptionVersion;
+    }
+
+    synchronized Map<String, Long> getCreationTimes() {
+        var times = new LinkedHashMap<String, Long>();
+
+        for (int i = 0; i < creationTimes.size(); i++) {
+            times.put(String.valueOf(i + 1), creationTimes.get(i).getEpochSecond());
+        }
+
+        return times;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String encrypt(byte[] plaintext) throws GeneralSecurityException {
+        var version = getLatestVersion();
+        var nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+
+        var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key(version), "AES"), new GCMParameterSpec(TAG_LENGTH_BITS, nonce));
+
+        var output = ByteBuffer.allocate(NONCE_LENGTH + cipher.getOutputSize(plaintext.length));
+        output.put(nonce);
+        cipher.doFinal(ByteBuffer.wrap(plaintext), output);
+
+        return VAULT_PREFIX + version + ':' + Base64.getEncoder().encodeToString(output.array());
+    }
+
+    /**
+     * @throws TransitException when the ciphertext is malformed, of a version that is not allowed or was tampered
+     *                          with
+     */
+    byte[] decrypt(String ciphertext) throws TransitException {
+        var version = version(ciphertext);
+        var input = payload(ciphertext);
+
+        if (input.length < NONCE_LENGTH) {
+            throw new TransitException("invalid ciphertext: too short");
+        }
+
+        try {
+            var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key(version), "AES"), new GCMParameterSpec(TAG_LENGTH_BITS, input, 0, NONCE_LENGTH));
+
+            return cipher.doFinal(input, NONCE_LENGTH, input.length - NONCE_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new TransitException("cipher: message authentication failed");
+        }
+    }
+
+    String hmac(byte[] input) throws GeneralSecurityException {
+        var version = getLatestVersion();
+
+        return VAULT_PREFIX + version + ':' + Base64.getEncoder().encodeToString(hmac(version, input));
+    }
+
+    boolean verify(byte[] input, String hmac) throws TransitException, GeneralSecurityException {
+        var version = version(hmac);
+
+        return MessageDigest.isEqual(hmac(version, input), payload(hmac));
+    }
+
+    private byte[] hmac(int version, byte[] input) throws GeneralSecurityException {
+        var mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key(version), "HmacSHA256"));
+
+        return mac.doFinal(input);
+    }
+
+    private synchronized byte[] key(int version) {
+        return versions.get(version - 1);
+    }
+
+    private int version(String value) throws TransitException {
+        var separator = value.indexOf(':', VAULT_PREFIX.length());
+
+        if (!value.startsWith(VAULT_PREFIX) || separator < 0) {
+            throw new TransitException("invalid ciphertext: no prefix");
+        }
+
+        int version;
+
+        try {
+            version = Integer.parseInt(value.substring(VAULT_PREFIX.length(), separator));
+        } catch (NumberFormatException e) {
+            throw new TransitException("invalid ciphertext: version number could not be decoded");
+        }
+
+        if (version < getMinDecryptionVersion()) {
+            throw new TransitException("ciphertext or signature version is disallowed by policy (too old)");
+        }
+
+        if (version > getLatestVersion()) {
+            throw new TransitException("invalid ciphertext: version is too new");
+        }
+
+        return version;
+    }
+
+    private static byte[] payload(String value) throws TransitException {
+        try {
+            return Base64.getDecoder().decode(value.substring(value.indexOf(':', VAULT_PREFIX.length()) + 1).getBytes(StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new TransitException("invalid ciphertext: could not decode base64");
+        }
+    }
+
+    /**
+     * A request Vault refuses with status 400, the message is returned in {@code errors} (or in the {@code error}
+     * of a batch item).
+     */
+    static final class TransitException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        TransitException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,572 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.emulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.acuz.gruntr.emulator.TransitKeyRing.TransitException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process emulator of the Vault transit secrets engine, for tests and benchmarks that should not depend on a
+ * running Vault. It implements {@code encrypt}, {@code decrypt}, {@code rewrap} (including {@code batch_input}),
+ * {@code datakey}, {@code hmac}, {@code verify} and {@code keys/<name>} (read, create and rotate) with real AES-GCM
+ * and HMAC-SHA256, on any mount path. Keys are created on first encryption, as Vault does.
+ * <p>
+ * Latency, random failures (500), throttling (429 with {@code Retry-After}) and unavailability (503) can be
+ * configured, and changed while the emulator runs.
+ * <p>
+ * The JDK HTTP server holds small responses back (Nagle's algorithm, ~40ms per request on Linux) unless the JVM is
+ * started with {@code -Dsun.net.httpserver.nodelay=true}. The emulator leaves that JVM-wide setting to its caller,
+ * the benchmarks set it on their forks.
+ */
+public final class VaultTransitEmulator implements AutoCloseable {
+    private static final Pattern PATH = Pattern.compile(
+            "^/v1/(.+?)/(encrypt|decrypt|rewrap|hmac|verify|datakey/plaintext|datakey/wrapped|keys)/([^/]+)(/rotate)?$");
+    private static final String HEADER_X_VAULT_TOKEN = "X-Vault-Token";
+    private static final String DATA = "data";
+    private static final String BATCH_INPUT = "batch_input";
+    private static final String BATCH_RESULTS = "batch_results";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Random random;
+    private final String token;
+    private final Duration retryAfter;
+    private final Map<String, TransitKeyRing> keys = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Integer> injectedStatuses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakConcurrency = new AtomicInteger();
+    private final ExecutorService executor;
+    private final HttpServer server;
+
+    private volatile LatencyDistribution latency;
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private volatile double unavailableRate;
+
+    private VaultTransitEmulator(Builder builder) throws IOException {
+        this.random = new Random(builder.seed);
+        this.token = builder.token;
+        this.retryAfter = builder.retryAfter;
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.throttleRate = builder.throttleRate;
+        this.unavailableRate = builder.unavailableRate;
+
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "vault-transit-emulator");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 0);
+        this.server.createContext("/v1/", this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the address to use as Vault host, e.g. {@code http://127.0.0.1:51234}
+     */
+    public URL getUrl() {
+        try {
+            return URI.create("http://127.0.0.1:" + server.getAddress().getPort()).toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates the key if it does not exist yet.
+     */
+    public void createKey(String transitPath, String keyName) {
+        keyRing(transitPath, keyName, true);
+    }
+
+    /**
+     * Adds a new version to the key (creating it if needed), new values are encrypted with it.
+     */
+    public void rotate(String transitPath, String keyName) {
+        keyRing(transitPath, keyName, true).rotate();
+    }
+
+    public void setMinDecryptionVersion(String transitPath, String keyName, int version) {
+        keyRing(transitPath, keyName, true).setMinDecryptionVersion(version);
+    }
+
+    public int getLatestVersion(String transitPath, String keyName) {
+        var keyRing = keyRing(transitPath, keyName, false);
+
+        return null == keyRing ? 0 : keyRing.getLatestVersion();
+    }
+
+    public void setLatency(LatencyDistribution latency) {
+        this.latency = Objects.requireNonNull(latency);
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = checkRate(errorRate);
+    }
+
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = checkRate(throttleRate);
+    }
+
+    public void setUnavailableRate(double unavailableRate) {
+        this.unavailableRate = checkRate(unavailableRate);
+    }
+
+    /**
+     * Answers the next {@code count} requests with the status code (e.g. 429, 500 or 503) instead of handling them.
+     */
+    public void injectFailures(int statusCode, int count) {
+        for (int i = 0; i < count; i++) {
+            injectedStatuses.add(statusCode);
+        }
+    }
+
+    /**
+     * @return the number of requests received, failed ones included
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @param action the transit action, e.g. {@code decrypt} or {@code datakey/plaintext}
+     * @return the number of requests received for the action, failed ones included
+     */
+    public int getRequestCount(String action) {
+        var count = requestCounts.get(action);
+
+        return null == count ? 0 : count.get();
+    }
+
+    /**
+     * @return the highest number of requests that were handled at the same time
+     */
+    public int getPeakConcurrency() {
+        return peakConcurrency.get();
+    }
+
+    public void resetStatistics() {
+        requestCount.set(0);
+        requestCounts.clear();
+        peakConcurrency.set(inFlight.get());
+    }
+
+    private TransitKeyRing keyRing(String transitPath, String keyName, boolean create) {
+        var id = transitPath + '/' + keyName;
+
+        return create
+                ? keys.computeIfAbsent(id, ignored -> new TransitKeyRing(keyName, secureRandom))
+                : keys.get(id);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        var concurrency = inFlight.incrementAndGet();
+        peakConcurrency.accumulateAndGet(concurrency, Math::max);
+        requestCount.incrementAndGet();
+
+        try (exchange) {
+            var matcher = PATH.matcher(exchange.getRequestURI().getPath());
+            var action = matcher.matches() ? matcher.group(2) : "unknown";
+            requestCounts.computeIfAbsent(action, ignored -> new AtomicInteger()).incrementAndGet();
+
+            delay();
+
+            var failure = nextFailure();
+
+            if (0 != failure) {
+                if (429 == failure) {
+                    exchange.getResponseHeaders().add("Retry-After", String.valueOf(Math.max(1, retryAfter.toSeconds())));
+                }
+
+                sendErrors(exchange, failure, "injected failure");
+            } else if (null != token && !token.equals(exchange.getRequestHeaders().getFirst(HEADER_X_VAULT_TOKEN))) {
+                sendErrors(exchange, 403, "permission denied");
+            } else if (!matcher.matches()) {
+                sendErrors(exchange, 404, "unsupported path");
+            } else {
+                route(exchange, matcher);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        long nanos;
+
+        synchronized (random) {
+            nanos = latency.nextNanos(random);
+        }
+
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    private int nextFailure() {
+        var injected = injectedStatuses.poll();
+
+        if (null != injected) {
+            return injected;
+        }
+
+        double draw;
+
+        synchronized (random) {
+            draw = random.nextDouble();
+        }
+
+        if (draw < throttleRate) {
+            return 429;
+        }
+
+        if (draw < throttleRate + unavailableRate) {
+            return 503;
+        }
+
+        if (draw < throttleRate + unavailableRate + errorRate) {
+            return 500;
+        }
+
+        return 0;
+    }
+
+    private void route(HttpExchange exchange, Matcher matcher) throws IOException {
+        var transitPath = matcher.group(1);
+        var action = matcher.group(2);
+        var keyName = matcher.group(3);
+        var rotate = null != matcher.group(4);
+        var method = exchange.getRequestMethod();
+
+        try {
+            if ("keys".equals(action)) {
+                handleKeys(exchange, method, transitPath, keyName, rotate);
+                return;
+            }
+
+            if (rotate || !"POST".equals(method)) {
+                sendErrors(exchange, 405, "unsupported operation");
+                return;
+            }
+
+            var request = mapper.readTree(exchange.getRequestBody());
+            var keyRing = keyRing(transitPath, keyName, "encrypt".equals(action));
+
+            if (null == keyRing) {
+                sendErrors(exchange, 400, "encryption key not found");
+                return;
+            }
+
+            var data = mapper.createObjectNode();
+
+            if (request.has(BATCH_INPUT) && ("encrypt".equals(action) || "decrypt".equals(action) || "rewrap".equals(action))) {
+                var results = data.putArray(BATCH_RESULTS);
+                var failures = 0;
+
+                for (JsonNode item : request.get(BATCH_INPUT)) {
+                    var result = results.addObject();
+
+                    try {
+                        handleValue(action, keyRing, item, result);
+                    } catch (TransitException e) {
+                        result.put("error", e.getMessage());
+                        failures++;
+                    }
+                }
+
+                // like Vault, a batch of which every item failed is answered with 400, the results say why
+                sendData(exchange, 0 < failures && failures == results.size() ? 400 : 200, data);
+            } else {
+                handleValue(action, keyRing, request, data);
+                sendData(exchange, 200, data);
+            }
+        } catch (TransitException e) {
+            sendErrors(exchange, 400, e.getMessage());
+        } catch (GeneralSecurityException e) {
+            sendErrors(exchange, 500, e.getMessage());
+        }
+    }
+
+    private void handleValue(String action, TransitKeyRing keyRing, JsonNode input, ObjectNode output) throws TransitException, GeneralSecurityException {
+        switch (action) {
+            case "encrypt":
+                output.put("ciphertext", keyRing.encrypt(base64(input, "plaintext")));
+                output.put("key_version", keyRing.getLatestVersion());
+                break;
+            case "decrypt":
+                output.put("plaintext", Base64.getEncoder().encodeToString(keyRing.decrypt(text(input, "ciphertext"))));
+                break;
+            case "rewrap":
+                output.put("ciphertext", keyRing.encrypt(keyRing.decrypt(text(input, "ciphertext"))));
+                output.put("key_version", keyRing.getLatestVersion());
+                break;
+            case "hmac":
+                output.put("hmac", keyRing.hmac(base64(input, "input")));
+                break;
+            case "verify":
+                output.put("valid", keyRing.verify(base64(input, "input"), text(input, "hmac")));
+                break;
+            default:
+                // datakey/plaintext and datakey/wrapped
+                var bits = input.path("bits").asInt(256);
+
+                if (128 != bits && 256 != bits && 512 != bits) {
+                    throw new TransitException("invalid bit length");
+                }
+
+                var dataKey = new byte[bits / 8];
+                secureRandom.nextBytes(dataKey);
+
+                output.put("ciphertext", keyRing.encrypt(dataKey));
+                output.put("key_version", keyRing.getLatestVersion());
+
+                if ("datakey/plaintext".equals(action)) {
+                    output.put("plaintext", Base64.getEncoder().encodeToString(dataKey));
+                }
+        }
+    }
+
+    private void handleKeys(HttpExchange exchange, String method, String transitPath, String keyName, boolean rotate) throws IOException {
+        if ("POST".equals(method)) {
+            if (rotate) {
+                rotate(transitPath, keyName);
+            } else {
+                createKey(transitPath, keyName);
+            }
+
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+
+        var keyRing = keyRing(transitPath, keyName, false);
+
+        if (rotate || !"GET".equals(method)) {
+            sendErrors(exchange, 405, "unsupported operation");
+        } else if (null == keyRing) {
+            sendErrors(exchange, 404);
+        } else {
+            var data = mapper.createObjectNode();
+            data.put("name", keyRing.getName());
+            data.put("type", "aes256-gcm96");
+            data.put("latest_version", keyRing.getLatestVersion());
+            data.put("min_decryption_version", keyRing.getMinDecryptionVersion());
+            data.put("min_encryption_version", 0);
+            data.put("supports_encryption", true);
+            data.put("supports_decryption", true);
+            data.put("supports_derivation", true);
+            data.put("supports_signing", false);
+
+            var versions = data.putObject("keys");
+            keyRing.getCreationTimes().forEach(versions::put);
+
+            sendData(exchange, 200, data);
+        }
+    }
+
+    private static byte[] base64(JsonNode input, String field) throws TransitException {
+        try {
+            return Base64.getDecoder().decode(text(input, field));
+        } catch (IllegalArgumentException e) {
+            throw new TransitException("unable to decode " + field + " as base64");
+        }
+    }
+
+    private static String text(JsonNode input, String field) throws TransitException {
+        var value = input.get(field);
+
+        if (null == value || !value.isTextual()) {
+            throw new TransitException("missing " + field + " to process");
+        }
+
+        return value.asText();
+    }
+
+    private void sendData(HttpExchange exchange, int statusCode, ObjectNode data) throws IOException {
+        send(exchange, statusCode, mapper.createObjectNode().set(DATA, data));
+    }
+
+    private void sendErrors(HttpExchange exchange, int statusCode, String... errors) throws IOException {
+        var body = mapper.createObjectNode();
+        var array = body.putArray("errors");
+
+        for (String error : errors) {
+            array.add(error);
+        }
+
+        send(exchange, statusCode, body);
+    }
+
+    private void send(HttpExchange exchange, int statusCode, JsonNode json) throws IOException {
+        var body = mapper.writeValueAsBytes(json);
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Rate should be between 0 and 1, got " + rate);
+        }
+
+        return rate;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static final class Builder {
+        private int port;
+        private String token;
+        private long seed = 42;
+        private Duration retryAfter = Duration.ofSeconds(1);
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private double errorRate;
+        private double throttleRate;
+        private double unavailableRate;
+
+        /**
+         * @param port the port to listen on, a free port is picked by default
+         */
+        public Builder port(int port) {
+            this.port = port;
+
+            return this;
+        }
+
+        /**
+         * @param token the only token accepted, requests with another token are refused (403). Any token is
+         *              accepted by default
+         */
+        public Builder token(String token) {
+            this.token = token;
+
+            return this;
+        }
+
+        /**
+         * @param seed the seed of the random generator that drives latencies and failures, to make runs repeatable
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+
+            return this;
+        }
+
+        public Builder latency(LatencyDistribution latency) {
+            this.latency = latency;
+
+            return this;
+        }
+
+        /**
+         * @param errorRate the fraction of requests answered with status 500
+         */
+        public Builder errorRate(double errorRate) {
+            this.errorRate = errorRate;
+
+            return this;
+        }
+
+        /**
+         * @param throttleRate the fraction of requests answered with status 429, see {@link #retryAfter(Duration)}
+         */
+        public Builder throttleRate(double throttleRate) {
+            this.throttleRate = throttleRate;
+
+            return this;
+        }
+
+        /**
+         * @param unavailableRate the fraction of requests answered with status 503
+         */
+        public Builder unavailableRate(double unavailableRate) {
+            this.unavailableRate = unavailableRate;
+
+            return this;
+        }
+
+        /**
+         * @param retryAfter the {@code Retry-After} of throttled requests, rounded to seconds, 1 second by default
+         */
+        public Builder retryAfter(Duration retryAfter) {
+            this.retryAfter = retryAfter;
+
+            return this;
+        }
+
+        public VaultTransitEmulator build() throws IOException {
+            validate();
+
+            return new VaultTransitEmulator(this);
+        }
+
+        private void validate() {
+            Objects.requireNonNull(latency, "Latency should not be null");
+            Objects.requireNonNull(retryAfter, "Retry-After should not be null");
+
+            checkRate(errorRate);
+            checkRate(throttleRate);
+            checkRate(unavailableRate);
+
+            if (throttleRate + unavailableRate + errorRate > 1) {
+                throw new IllegalArgumentException("The failure rates should not add up to more than 1");
+            }
+        }
+    }
+}
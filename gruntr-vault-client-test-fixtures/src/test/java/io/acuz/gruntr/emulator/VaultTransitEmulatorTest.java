@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr.emulator;
+
+import io.acuz.gruntr.vault.IntegrityMode;
+import io.acuz.gruntr.vault.RetryPolicy;
+import io.acuz.gruntr.vault.VaultTransitRestClient;
+import io.acuz.gruntr.vault.exception.VaultException;
+import io.acuz.gruntr.vault.model.VaultToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VaultTransitEmulatorTest {
+    private static final String TRANSIT_PATH = "transit/project_name";
+    private static final String KEY_NAME = "appkey";
+
+    private VaultTransitEmulator emulator;
+
+    @BeforeEach
+    void startEmulator() throws IOException {
+        emulator = VaultTransitEmulator.builder().token("root").build();
+    }
+
+    @AfterEach
+    void stopEmulator() {
+        emulator.close();
+    }
+
+    @Test
+    void testEncryptDecrypt() throws VaultException {
+        try (var client = createClient().build()) {
+            var ciphertext = client.encrypt("my secret".getBytes(StandardCharsets.UTF_8));
+
+            assertTrue(String.valueOf(ciphertext).startsWith("vault:v1:"));
+            assertArrayEquals("my secret".toCharArray(), client.decrypt(ciphertext));
+            assertEquals(1, emulator.getRequestCount("encrypt"));
+            assertEquals(1, emulator.getRequestCount("decrypt"));
+        }
+    }
+
+    @Test
+    void testPropertiesRoundTripWithBatches() throws VaultException {
+        try (var client = createClient().batchSize(10).build()) {
+            var properties = createProperties(25);
+            var decrypted = client.decrypt(client.encrypt(properties));
+
+            properties.forEach((key, value) -> assertEquals(value, decrypted.getProperty((String) key)));
+            // three batches, and the gruntr__sha3 hash
+            assertEquals(4, emulator.getRequestCount("encrypt"));
+        }
+    }
+
+    @Test
+    void testRotationAndRewrap() throws VaultException {
+        try (var client = createClient().rewrapOnlyStale(true).build()) {
+            var encrypted = client.encrypt(createProperties(3));
+
+            emulator.rotate(TRANSIT_PATH, KEY_NAME);
+            emulator.setMinDecryptionVersion(TRANSIT_PATH, KEY_NAME, 1);
+
+            var rewrapped = client.rewrap(encrypted);
+
+            assertTrue(rewrapped.getProperty("my.secret.0").startsWith("vault:v2:"));
+            assertEquals("value 0", client.decrypt(rewrapped).getProperty("my.secret.0"));
+
+            emulator.setMinDecryptionVersion(TRANSIT_PATH, KEY_NAME, 2);
+
+            assertThrows(VaultException.class, () -> client.decrypt(encrypted.getProperty("my.secret.0").toCharArray()));
+        }
+    }
+
+    @Test
+    void testEnvelopeEncryptionAndHmac() throws VaultException {
+        // like Vault, only encrypt creates missing keys
+        emulator.createKey(TRANSIT_PATH, KEY_NAME);
+
+        try (var client = createClient().envelopeEncryption(true).integrityMode(IntegrityMode.HMAC).build()) {
+            var properties = createProperties(5);
+            var encrypted = client.encrypt(properties);
+
+            assertTrue(encrypted.getProperty(VaultTransitRestClient.GRUNTR__HMAC).startsWith("vault:v1:"));
+            assertEquals("value 4", client.decrypt(encrypted).getProperty("my.secret.4"));
+            assertEquals(1, emulator.getRequestCount("datakey/plaintext"));
+        }
+    }
+
+    @Test
+    void testKeys() throws IOException, InterruptedException {
+        emulator.rotate(TRANSIT_PATH, KEY_NAME);
+
+        var found = get("/v1/" + TRANSIT_PATH + "/keys/" + KEY_NAME, "root");
+        var missing = get("/v1/" + TRANSIT_PATH + "/keys/other", "root");
+        var forbidden = get("/v1/" + TRANSIT_PATH + "/keys/" + KEY_NAME, "wrong");
+
+        assertEquals(200, found.statusCode());
+        assertTrue(found.body().contains("\"latest_version\":2"));
+        assertEquals(404, missing.statusCode());
+        assertEquals(403, forbidden.statusCode());
+    }
+
+    @Test
+    void testFaultInjection() throws IOException, InterruptedException {
+        emulator.injectFailures(429, 1);
+
+        var throttled = get("/v1/" + TRANSIT_PATH + "/keys/" + KEY_NAME, "root");
+
+        assertEquals(429, throttled.statusCode());
+        assertEquals("1", throttled.headers().firstValue("Retry-After").orElse(null));
+
+        emulator.setUnavailableRate(1);
+
+        assertEquals(503, get("/v1/" + TRANSIT_PATH + "/keys/" + KEY_NAME, "root").statusCode());
+
+        emulator.setUnavailableRate(0);
+
+        assertEquals(404, get("/v1/" + TRANSIT_PATH + "/keys/" + KEY_NAME, "root").statusCode());
+        assertEquals(3, emulator.getRequestCount());
+    }
+
+    @Test
+    void testRetriesInjectedFailures() throws VaultException {
+        var retryPolicy = RetryPolicy.builder().maxAttempts(3).baseDelay(Duration.ofMillis(1)).maxDelay(Duration.ofMillis(10)).build();
+
+        try (var client = createClient().retryPolicy(retryPolicy).build()) {
+            emulator.injectFailures(503, 1);
+            emulator.injectFailures(429, 1);
+
+            var ciphertext = client.encrypt("my secret".getBytes(StandardCharsets.UTF_8));
+
+            assertArrayEquals("my secret".toCharArray(), client.decrypt(ciphertext));
+            assertEquals(4, emulator.getRequestCount());
+        }
+    }
+
+    @Test
+    void testLatency() throws VaultException {
+        emulator.setLatency(LatencyDistribution.fixed(Duration.ofMillis(50)));
+
+        try (var client = createClient().build()) {
+            var start = System.nanoTime();
+            client.encrypt("my secret".getBytes(StandardCharsets.UTF_8));
+
+            assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+        }
+    }
+
+    @Test
+    void testTamperedCiphertext() throws VaultException {
+        try (var client = createClient().build()) {
+            var ciphertext = client.encrypt("my secret".getBytes(StandardCharsets.UTF_8));
+            var tampered = "vault:v1:".length() + 4;
+            ciphertext[tampered] = 'A' == ciphertext[tampered] ? 'B' : 'A';
+
+            assertThrows(VaultException.class, () -> client.decrypt(ciphertext));
+        }
+    }
+
+    @Test
+    void testBatchOfFailedItems() throws IOException, InterruptedException, VaultException {
+        try (var client = createClient().batchSize(10).build()) {
+            var encrypted = client.encrypt(createProperties(2));
+
+            // every item of the batch fails: Vault answers 400, with the error of each item
+            encrypted.setProperty("my.secret.0", "vault:v1:YQ==");
+            encrypted.setProperty("my.secret.1", "vault:v1:YQ==");
+
+            var exception = assertThrows(VaultException.class, () -> client.decrypt(encrypted));
+            assertTrue(exception.getMessage().contains("my.secret."));
+            assertTrue(exception.getMessage().contains("invalid ciphertext: too short"));
+
+            var response = post("/v1/" + TRANSIT_PATH + "/decrypt/" + KEY_NAME,
+                    "{\"batch_input\": [{\"ciphertext\": \"vault:v1:YQ==\"}, {\"ciphertext\": \"vault:v1:YQ==\"}]}");
+
+            assertEquals(400, response.statusCode());
+            assertTrue(response.body().contains("\"batch_results\""));
+        }
+    }
+
+    private VaultTransitRestClient.Builder createClient() {
+        return VaultTransitRestClient.builder()
+                .host(emulator.getUrl())
+                .token(VaultToken.of("root"))
+                .transitPath(TRANSIT_PATH)
+                .transitKeyName(KEY_NAME);
+    }
+
+    private static Properties createProperties(int size) {
+        var properties = new Properties();
+
+        for (int i = 0; i < size; i++) {
+            properties.setProperty("my.secret." + i, "value " + i);
+        }
+
+        return properties;
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create(emulator.getUrl() + path))
+                .header("X-Vault-Token", "root")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path, String token) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create(emulator.getUrl() + path))
+                .header("X-Vault-Token", token)
+                .GET()
+                .build();
+
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
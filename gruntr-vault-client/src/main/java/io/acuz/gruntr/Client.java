@@ -16,15 +16,45 @@
 
 package io.acuz.gruntr;
 
+import java.util.Map;
 import java.util.Properties;
 
-public interface Client {
+public interface Client extends AutoCloseable {
     String GRUNTR__VAULT_TRANSIT_KEY = "gruntr__vault_transit_key";
     String GRUNTR__VAULT_HOST = "gruntr__vault_host";
     String GRUNTR__VAULT_TRANSIT_PATH = "gruntr__vault_transit_path";
     String GRUNTR__SHA_3 = "gruntr__sha3";
+    String GRUNTR__HMAC = "gruntr__hmac";
 
     Properties decryptProperties();
 
     Properties getEncryptedProperties();
+
+    /**
+     * Decrypts a single value on first access and memoizes it, the other values of the file are left alone.
+     *
+     * @param key the property key
+     * @return the decrypted value, the value as is when it is not encrypted, or null when the key is unknown
+     */
+    String getSecret(String key);
+
+    /**
+     * @return a read-only view on the decrypted properties, a value is only decrypted once it is read. The view
+     * follows reloads of a watched file, an iteration that started before a reload finishes on the previous version
+     */
+    Map<String, String> getSecrets();
+
+    /**
+     * Registers a listener that is notified when a watched properties file changed, see
+     * {@link ClientImpl.Builder#setWatch(boolean)}.
+     *
+     * @param listener the listener to notify
+     */
+    void addChangeListener(PropertiesChangeListener listener);
+
+    /**
+     * Releases the connections to Vault held by this client.
+     */
+    @Override
+    void close();
 }
@@ -16,6 +16,8 @@
 
 package io.acuz.gruntr;
 
+import io.acuz.gruntr.vault.DecryptionCache;
+import io.acuz.gruntr.vault.RetryPolicy;
 import io.acuz.gruntr.vault.VaultTransitRestClient;
 import io.acuz.gruntr.vault.exception.VaultException;
 import io.acuz.gruntr.vault.model.VaultToken;
@@ -24,19 +26,88 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.net.URL;
 import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 public final class ClientImpl implements Client {
+    private static final String GRUNTR__PREFIX = "gruntr__";
 
     private final VaultToken token;
 
-    private final Properties encryptedProperties;
+    private final Path path;
+
+    private final AtomicReference<Snapshot> snapshot;
+
+    private final DecryptionCache decryptionCache;
+    private final RetryPolicy retryPolicy;
+    private final List<URL> readHosts;
+    private final boolean validateConcurrently;
+
+    private final List<PropertiesChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final PropertiesFileWatcher watcher;
+
+    private volatile LazySecrets secrets;
+
+    /**
+     * Read-only view on the secrets of the current version of the file, it follows reloads.
+     */
+    private final Map<String, String> currentSecrets = new AbstractMap<>() {
+        @Override
+        public String get(Object key) {
+            return secrets.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return secrets.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return secrets.entrySet();
+        }
+
+        // like the secrets, without decrypting them
+        @Override
+        public String toString() {
+            return secrets.toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    };
 
     public ClientImpl(Builder builder) {
         this.token = builder.token.copyOf();
-        this.encryptedProperties = readEncryptedProperties(builder.path);
+        this.path = builder.path;
+        this.decryptionCache = builder.decryptionCache;
+        this.retryPolicy = builder.retryPolicy;
+        this.readHosts = builder.readHosts;
+        this.validateConcurrently = builder.validateConcurrently;
+
+        var encryptedProperties = readEncryptedProperties(builder.path);
+        var vaultClient = new VaultClientHolder(encryptedProperties);
+
+        this.snapshot = new AtomicReference<>(new Snapshot(encryptedProperties, null, vaultClient));
+        this.secrets = new LazySecrets(this.getEncryptedProperties(), vaultClient);
+        this.watcher = builder.watch ? new PropertiesFileWatcher(builder.path, this::reloadQuietly) : null;
 
         builder.token.invalidate();
     }
@@ -56,35 +127,228 @@ public final class ClientImpl implements Client {
         }
     }
 
+    /**
+     * Decrypts the current version of the properties file. When the file is watched, the decrypted properties are
+     * kept so that a new version of the file only requires the values that changed to be decrypted.
+     */
     @Override
     public Properties decryptProperties() {
-        var originalProperties = this.getEncryptedProperties();
+        var current = this.snapshot.get();
+
+        if (null != this.watcher && null != current.decryptedProperties) {
+            return (Properties) current.decryptedProperties.clone();
+        }
+
+        try {
+            var decryptedProperties = current.vaultClient.get().decrypt(current.encryptedProperties);
+
+            if (null != this.watcher) {
+                this.snapshot.compareAndSet(current, new Snapshot(current.encryptedProperties, (Properties) decryptedProperties.clone(), current.vaultClient));
+            }
+
+            return decryptedProperties;
+        } catch (VaultException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void addChangeListener(PropertiesChangeListener listener) {
+        this.listeners.add(Objects.requireNonNull(listener));
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            this.listeners.forEach(listener -> listener.onError(e));
+        }
+    }
 
-        String vaultTransitKey = originalProperties.getProperty(GRUNTR__VAULT_TRANSIT_KEY);
-        String vaultHost = originalProperties.getProperty(GRUNTR__VAULT_HOST);
-        String vaultTransitPath = originalProperties.getProperty(GRUNTR__VAULT_TRANSIT_PATH);
-        String gruntrSha3Value = originalProperties.getProperty(GRUNTR__SHA_3);
+    /**
+     * Reads the properties file again and, if it changed and was decrypted before, decrypts the values that are new
+     * or changed. Values that did not change are taken from the previous decryption. The new version, its secrets and
+     * its Vault client are published together once it was decrypted and handed to the listeners. When it can't be
+     * decrypted, the previous version stays in place with its own Vault client.
+     */
+    synchronized void reload() {
+        var previous = this.snapshot.get();
+        var encryptedProperties = readEncryptedProperties(this.path);
+
+        if (encryptedProperties.equals(previous.encryptedProperties)) {
+            return;
+        }
 
-        Objects.requireNonNull(gruntrSha3Value);
+        var sameVaultKey = sameVaultKey(previous.encryptedProperties, encryptedProperties);
+
+        // the new version needs a client for its own Vault and key, the previous version keeps using its own
+        var vaultClient = sameVaultKey ? previous.vaultClient : new VaultClientHolder(encryptedProperties);
+        Properties decryptedProperties;
 
-        VaultTransitRestClient client;
         try {
-            client = VaultTransitRestClient.builder()
+            if (!sameVaultKey) {
+                // fails right away when the new version names a Vault host that isn't valid
+                vaultClient.get();
+            }
+
+            decryptedProperties = null == previous.decryptedProperties
+                    ? null
+                    : decryptChanges(previous, encryptedProperties, vaultClient.get());
+        } catch (RuntimeException e) {
+            if (!sameVaultKey) {
+                vaultClient.close();
+            }
+
+            throw e;
+        }
+
+        this.snapshot.set(new Snapshot(encryptedProperties, decryptedProperties, vaultClient));
+        this.secrets = new LazySecrets((Properties) encryptedProperties.clone(), vaultClient);
+
+        if (!sameVaultKey) {
+            previous.vaultClient.close();
+        }
+
+        if (null != decryptedProperties) {
+            this.listeners.forEach(listener -> listener.onChange((Properties) decryptedProperties.clone()));
+        }
+    }
+
+    private Properties decryptChanges(Snapshot previous, Properties encryptedProperties, VaultTransitRestClient vaultClient) {
+        try {
+            if (!sameVaultKey(previous.encryptedProperties, encryptedProperties)) {
+                // values encrypted with another key or on another Vault, nothing can be reused
+                return vaultClient.decrypt(encryptedProperties);
+            }
+
+            var decryptedProperties = new Properties();
+            var changedProperties = new Properties();
+
+            for (String key : encryptedProperties.stringPropertyNames()) {
+                var value = encryptedProperties.getProperty(key);
+
+                if (key.toLowerCase().startsWith(GRUNTR__PREFIX)) {
+                    changedProperties.put(key, value);
+                } else if (value.equals(previous.encryptedProperties.getProperty(key)) && previous.decryptedProperties.containsKey(key)) {
+                    decryptedProperties.put(key, previous.decryptedProperties.get(key));
+                } else {
+                    changedProperties.put(key, value);
+                }
+            }
+
+            if (changedProperties.stringPropertyNames().stream().anyMatch(key -> !key.toLowerCase().startsWith(GRUNTR__PREFIX))) {
+                decryptedProperties.putAll(vaultClient.decrypt(changedProperties));
+            }
+
+            return decryptedProperties;
+        } catch (VaultException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean sameVaultKey(Properties previous, Properties current) {
+        return Objects.equals(previous.getProperty(GRUNTR__VAULT_HOST), current.getProperty(GRUNTR__VAULT_HOST))
+                && Objects.equals(previous.getProperty(GRUNTR__VAULT_TRANSIT_PATH), current.getProperty(GRUNTR__VAULT_TRANSIT_PATH))
+                && Objects.equals(previous.getProperty(GRUNTR__VAULT_TRANSIT_KEY), current.getProperty(GRUNTR__VAULT_TRANSIT_KEY))
+                && Objects.equals(previous.getProperty(GRUNTR__SHA_3), current.getProperty(GRUNTR__SHA_3))
+                && Objects.equals(previous.getProperty(GRUNTR__HMAC), current.getProperty(GRUNTR__HMAC));
+    }
+
+    private VaultTransitRestClient createVaultClient(Properties encryptedProperties) {
+        String vaultTransitKey = encryptedProperties.getProperty(GRUNTR__VAULT_TRANSIT_KEY);
+        String vaultHost = encryptedProperties.getProperty(GRUNTR__VAULT_HOST);
+        String vaultTransitPath = encryptedProperties.getProperty(GRUNTR__VAULT_TRANSIT_PATH);
+        String gruntrIntegrityValue = encryptedProperties.getProperty(GRUNTR__HMAC, encryptedProperties.getProperty(GRUNTR__SHA_3));
+
+        Objects.requireNonNull(gruntrIntegrityValue);
+
+        try {
+            return VaultTransitRestClient.builder()
                     .host(URI.create(vaultHost).toURL())
                     .token(token)
                     .transitPath(vaultTransitPath)
                     .transitKeyName(vaultTransitKey)
+                    .decryptionCache(this.decryptionCache)
+                    .retryPolicy(this.retryPolicy)
+                    .readHosts(this.readHosts)
+                    .validateConcurrently(this.validateConcurrently)
                     .build();
-
-            return client.decrypt(originalProperties);
-        } catch (MalformedURLException | VaultException e) {
+        } catch (MalformedURLException e) {
             throw new RuntimeException(e);
         }
     }
 
     @Override
     public Properties getEncryptedProperties() {
-        return (Properties) this.encryptedProperties.clone();
+        return (Properties) this.snapshot.get().encryptedProperties.clone();
+    }
+
+    @Override
+    public String getSecret(String key) {
+        return this.secrets.getSecret(key);
+    }
+
+    @Override
+    public Map<String, String> getSecrets() {
+        return this.currentSecrets;
+    }
+
+    @Override
+    public void close() {
+        if (null != this.watcher) {
+            this.watcher.close();
+        }
+
+        this.snapshot.get().vaultClient.close();
+    }
+
+    private static final class Snapshot {
+        private final Properties encryptedProperties;
+        private final Properties decryptedProperties;
+        private final VaultClientHolder vaultClient;
+
+        private Snapshot(Properties encryptedProperties, Properties decryptedProperties, VaultClientHolder vaultClient) {
+            this.encryptedProperties = encryptedProperties;
+            this.decryptedProperties = decryptedProperties;
+            this.vaultClient = vaultClient;
+        }
+    }
+
+    /**
+     * The Vault client of a version of the properties file. It is created on first use, from the gruntr__ values of
+     * that version, and reused by all subsequent calls so that its connections to Vault are kept alive. Versions that
+     * share the same Vault and key share the same holder.
+     */
+    private final class VaultClientHolder implements Supplier<VaultTransitRestClient> {
+        private final Properties encryptedProperties;
+        private VaultTransitRestClient vaultClient;
+        private boolean closed;
+
+        private VaultClientHolder(Properties encryptedProperties) {
+            this.encryptedProperties = encryptedProperties;
+        }
+
+        @Override
+        public synchronized VaultTransitRestClient get() {
+            if (this.closed) {
+                throw new IllegalStateException("The Vault client of this version of the properties file is closed");
+            }
+
+            if (null == this.vaultClient) {
+                this.vaultClient = createVaultClient(this.encryptedProperties);
+            }
+
+            return this.vaultClient;
+        }
+
+        private synchronized void close() {
+            this.closed = true;
+
+            if (null != this.vaultClient) {
+                this.vaultClient.close();
+                this.vaultClient = null;
+            }
+        }
     }
 
     public static final class Builder {
@@ -92,6 +356,16 @@ public final class ClientImpl implements Client {
 
         private VaultToken token;
 
+        private DecryptionCache decryptionCache;
+
+        private RetryPolicy retryPolicy = RetryPolicy.builder().build();
+
+        private List<URL> readHosts = List.of();
+
+        private boolean validateConcurrently;
+
+        private boolean watch;
+
         public Builder setPath(Path path) {
             this.path = path;
 
@@ -104,6 +378,59 @@ public final class ClientImpl implements Client {
             return this;
         }
 
+        /**
+         * Sets an optional cache for decrypted values, repeated calls to {@link Client#decryptProperties()} then only
+         * reach Vault for values that are not cached (anymore).
+         */
+        public Builder setDecryptionCache(DecryptionCache decryptionCache) {
+            this.decryptionCache = decryptionCache;
+
+            return this;
+        }
+
+        /**
+         * Sets how requests to Vault are retried when it cannot be reached or is overloaded, by default up to 3
+         * attempts with a jittered backoff. Use {@link RetryPolicy#none()} to fail on the first error.
+         */
+        public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = Objects.requireNonNull(retryPolicy);
+
+            return this;
+        }
+
+        /**
+         * Sets additional Vault nodes, e.g. performance standbys, to decrypt and validate the properties with. They
+         * are not read from the properties file, as the integrity check only covers the Vault host stored there.
+         */
+        public Builder setReadHosts(List<URL> readHosts) {
+            this.readHosts = List.copyOf(readHosts);
+
+            return this;
+        }
+
+        /**
+         * Decrypts the values while the {@code gruntr__} header is being validated, instead of once it was validated.
+         * This saves a round trip to Vault, but sends the ciphertexts to the Vault named in the file before the header
+         * proved that they belong to it. Decrypted values are only returned, and cached, once the header is valid.
+         * Disabled by default.
+         */
+        public Builder setValidateConcurrently(boolean validateConcurrently) {
+            this.validateConcurrently = validateConcurrently;
+
+            return this;
+        }
+
+        /**
+         * Watches the properties file for changes. Once decrypted, a new version of the file only requires its new
+         * or changed values to be decrypted, the result is handed to the registered
+         * {@link PropertiesChangeListener}s. The watcher stops when the client is closed.
+         */
+        public Builder setWatch(boolean watch) {
+            this.watch = watch;
+
+            return this;
+        }
+
         public Client build() {
             validate();
             return new ClientImpl(this);
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr;
+
+import io.acuz.gruntr.vault.VaultTransitRestClient;
+import io.acuz.gruntr.vault.exception.VaultException;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only view on the decrypted values of an encrypted properties file. A value is decrypted the first time it is
+ * read and memoized afterwards, concurrent first reads of the same key share a single call to Vault. The
+ * {@code gruntr__} header is validated once, while the first value is decrypted: no value is returned before the
+ * header is valid.
+ * <p>
+ * Unlike other maps, {@link #toString()} never shows the values, and two views are only equal when they are the same
+ * instance: comparing or hashing the values would decrypt every secret of the file.
+ */
+final class LazySecrets extends AbstractMap<String, String> {
+    private static final String GRUNTR__PREFIX = "gruntr__";
+    private static final String VAULT_PREFIX = "vault:";
+    private static final String ENVELOPE_PREFIX = "gruntr:";
+    private static final String MASK = "****";
+
+    private final Properties encryptedProperties;
+    private final Supplier<VaultTransitRestClient> vaultClient;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> values = new ConcurrentHashMap<>();
+    private final Set<String> keys;
+    private CompletableFuture<Void> validation;
+
+    LazySecrets(Properties encryptedProperties, Supplier<VaultTransitRestClient> vaultClient) {
+        this.encryptedProperties = encryptedProperties;
+        this.vaultClient = vaultClient;
+        this.keys = encryptedProperties.stringPropertyNames()
+                .stream()
+                .filter(key -> !key.toLowerCase().startsWith(GRUNTR__PREFIX))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * @param key the property key
+     * @return the decrypted value, the value as is when it is not encrypted, or null when the key is unknown
+     */
+    String getSecret(String key) {
+        if (!keys.contains(key)) {
+            return null;
+        }
+
+        var value = encryptedProperties.getProperty(key);
+        var ciphertext = value.trim();
+
+        var envelope = ciphertext.startsWith(ENVELOPE_PREFIX);
+
+        if (!envelope && !ciphertext.startsWith(VAULT_PREFIX)) {
+            // non-encrypted value
+            return value;
+        }
+
+        var secret = values.computeIfAbsent(key, k -> envelope ? decryptEnvelope(k) : decrypt(ciphertext));
+
+        // failures are not memoized, the next read tries again
+        secret.whenComplete((result, throwable) -> {
+            if (null != throwable) {
+                values.remove(key, secret);
+            }
+        });
+
+        return await(secret);
+    }
+
+    private CompletableFuture<String> decrypt(String ciphertext) {
+        var validation = validation();
+        var plaintext = vaultClient.get().decryptAsync(ciphertext.toCharArray());
+
+        validation.whenComplete((ignored, throwable) -> {
+            if (null != throwable) {
+                // the header is not valid, the value is discarded
+                plaintext.thenAccept(value -> Arrays.fill(value, '\0'));
+            }
+        });
+
+        return validation.thenCombine(plaintext, (ignored, value) -> {
+            var secret = String.copyValueOf(value);
+            Arrays.fill(value, '\0');
+
+            return secret;
+        });
+    }
+
+    /**
+     * Values encrypted with a data key (envelope encryption) are decrypted together with the {@code gruntr__} header,
+     * which holds the wrapped data key.
+     */
+    private CompletableFuture<String> decryptEnvelope(String key) {
+        var subset = new Properties();
+
+        encryptedProperties.stringPropertyNames()
+                .stream()
+                .filter(name -> name.toLowerCase().startsWith(GRUNTR__PREFIX))
+                .forEach(name -> subset.setProperty(name, encryptedProperties.getProperty(name)));
+        subset.setProperty(key, encryptedProperties.getProperty(key));
+
+        return vaultClient.get()
+                .decryptAsync(subset)
+                .thenApply(decryptedProperties -> decryptedProperties.getProperty(key));
+    }
+
+    private synchronized CompletableFuture<Void> validation() {
+        if (null == this.validation || this.validation.isCompletedExceptionally()) {
+            this.validation = vaultClient.get().validateAsync(encryptedProperties);
+        }
+
+        return this.validation;
+    }
+
+    private static String await(CompletableFuture<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof VaultException) {
+                throw new RuntimeException(cause);
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public String get(Object key) {
+        return key instanceof String ? getSecret((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                var iterator = keys.iterator();
+
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        return new LazyEntry(iterator.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+    /**
+     * @return the keys, with masked values
+     */
+    @Override
+    public String toString() {
+        return keys.stream()
+                .sorted()
+                .map(key -> key + "=" + MASK)
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    /**
+     * Map entry that only decrypts its value when it is read.
+     */
+    private final class LazyEntry implements Map.Entry<String, String> {
+        private final String key;
+
+        private LazyEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            return getSecret(key);
+        }
+
+        @Override
+        public String setValue(String value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + MASK;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr;
+
+import java.util.Properties;
+
+/**
+ * Notified by a {@link Client} that watches its properties file, each time a new version of the file was decrypted.
+ */
+@FunctionalInterface
+public interface PropertiesChangeListener {
+    /**
+     * @param decryptedProperties the decrypted properties of the new version of the file
+     */
+    void onChange(Properties decryptedProperties);
+
+    /**
+     * Called when a new version of the file could not be read or decrypted, the client keeps the previous version.
+     *
+     * @param exception the reason of the failure
+     */
+    default void onError(Exception exception) {
+        //no-op
+    }
+}
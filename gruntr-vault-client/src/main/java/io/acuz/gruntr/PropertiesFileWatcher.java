@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a single file with a {@link WatchService} on its directory and runs a callback, on a daemon thread, each
+ * time the file was created or modified. Events arriving in quick succession (editors often write a file in several
+ * steps) are coalesced into a single callback.
+ */
+final class PropertiesFileWatcher implements AutoCloseable {
+    private static final long SETTLE_MILLIS = 50;
+
+    private final Path file;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    PropertiesFileWatcher(Path file, Runnable onChange) {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.file.getParent().register(this.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to watch " + this.file, e);
+        }
+
+        this.thread = new Thread(this::watch, "gruntr-properties-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                var changed = poll(watchService.take());
+
+                // coalesce the events that follow shortly after
+                var next = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+
+                while (null != next) {
+                    changed |= poll(next);
+                    next = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                if (changed) {
+                    onChange.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            //closed, stop watching
+        }
+    }
+
+    private boolean poll(WatchKey key) {
+        var changed = false;
+
+        for (var event : key.pollEvents()) {
+            if (StandardWatchEventKinds.OVERFLOW == event.kind() || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+
+        key.reset();
+
+        return changed;
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            //ignore, the watch thread stops either way
+        }
+
+        thread.interrupt();
+    }
+}
@@ -16,11 +16,19 @@
 
 package io.acuz.gruntr;
 
+import io.acuz.gruntr.emulator.VaultTransitEmulator;
+import io.acuz.gruntr.vault.VaultTransitRestClient;
+import io.acuz.gruntr.vault.exception.VaultException;
 import io.acuz.gruntr.vault.model.VaultToken;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -60,4 +68,95 @@ class ClientTest {
         var properties = client.decryptProperties();
         assertEquals(2, properties.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void test_reloadPublishesTheNewVersionOfTheFile(@TempDir Path directory) throws IOException {
+        var file = Files.writeString(directory.resolve("application-encrypted.properties"), "a=vault:v1:one\n");
+
+        try (var client = ClientImpl.builder()
+                .setToken(VaultToken.of("root"))
+                .setPath(file)
+                .setWatch(true)
+                .build()) {
+            assertEquals("vault:v1:one", client.getEncryptedProperties().getProperty("a"));
+
+            Files.writeString(file, "a=vault:v1:two\nb=vault:v1:three\n");
+            ((ClientImpl) client).reload();
+
+            assertEquals("vault:v1:two", client.getEncryptedProperties().getProperty("a"));
+            assertEquals("vault:v1:three", client.getEncryptedProperties().getProperty("b"));
+        }
+    }
+
+    @Test
+    void test_reloadDecryptsWithTheNewTransitKey(@TempDir Path directory) throws IOException, VaultException {
+        var file = directory.resolve("application-encrypted.properties");
+
+        try (var emulator = VaultTransitEmulator.builder().token("root").build()) {
+            writeEncrypted(emulator, "appkey", "my secret", file);
+
+            try (var client = ClientImpl.builder()
+                    .setToken(VaultToken.of("root"))
+                    .setPath(file)
+                    .setWatch(true)
+                    .build()) {
+                var secrets = client.getSecrets();
+
+                assertEquals("my secret", client.decryptProperties().getProperty("my.secret"));
+                assertEquals("my secret", secrets.get("my.secret"));
+                assertEquals("{my.secret=****}", secrets.toString());
+
+                writeEncrypted(emulator, "otherkey", "my new secret", file);
+                ((ClientImpl) client).reload();
+
+                assertEquals("my new secret", client.decryptProperties().getProperty("my.secret"));
+                assertEquals("my new secret", secrets.get("my.secret"));
+                assertEquals("otherkey", client.getEncryptedProperties().getProperty(Client.GRUNTR__VAULT_TRANSIT_KEY));
+            }
+        }
+    }
+
+    @Test
+    void test_reloadKeepsThePreviousVersionWhenTheNewOneCannotBeDecrypted(@TempDir Path directory) throws IOException, VaultException {
+        var file = directory.resolve("application-encrypted.properties");
+
+        try (var emulator = VaultTransitEmulator.builder().token("root").build()) {
+            writeEncrypted(emulator, "appkey", "my secret", file);
+
+            try (var client = ClientImpl.builder()
+                    .setToken(VaultToken.of("root"))
+                    .setPath(file)
+                    .setWatch(true)
+                    .build()) {
+                assertEquals("my secret", client.decryptProperties().getProperty("my.secret"));
+
+                // the new version is encrypted with a key version Vault no longer decrypts
+                writeEncrypted(emulator, "otherkey", "my new secret", file);
+                emulator.rotate("transit/project_name", "otherkey");
+                emulator.setMinDecryptionVersion("transit/project_name", "otherkey", 2);
+
+                assertThrows(RuntimeException.class, ((ClientImpl) client)::reload);
+
+                assertEquals("appkey", client.getEncryptedProperties().getProperty(Client.GRUNTR__VAULT_TRANSIT_KEY));
+                assertEquals("my secret", client.getSecret("my.secret"));
+                assertEquals("my secret", client.getSecrets().get("my.secret"));
+                assertEquals("my secret", client.decryptProperties().getProperty("my.secret"));
+            }
+        }
+    }
+
+    private static void writeEncrypted(VaultTransitEmulator emulator, String transitKeyName, String secret, Path file) throws IOException, VaultException {
+        var properties = new Properties();
+        properties.put("my.secret", secret);
+
+        try (var vaultClient = VaultTransitRestClient.builder()
+                .host(emulator.getUrl())
+                .token(VaultToken.of("root"))
+                .transitPath("transit/project_name")
+                .transitKeyName(transitKeyName)
+                .build();
+             var outputStream = new FileOutputStream(file.toFile())) {
+            vaultClient.encrypt(properties).store(outputStream, "");
+        }
+    }
+}
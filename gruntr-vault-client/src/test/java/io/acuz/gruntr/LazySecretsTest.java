@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr;
+
+import io.acuz.gruntr.vault.VaultTransitRestClient;
+import io.acuz.gruntr.vault.exception.VaultException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LazySecretsTest {
+    @Test
+    void test_decryptsOnlyTheKeysThatAreRead() {
+        var vaultClient = new FakeVaultClient();
+        var secrets = new LazySecrets(createProperties(), () -> vaultClient);
+
+        assertEquals(0, vaultClient.decryptions.get());
+
+        assertEquals("decrypted:vault:v1:one", secrets.getSecret("my.secret"));
+        assertEquals("decrypted:vault:v1:one", secrets.get("my.secret"));
+        assertEquals(1, vaultClient.decryptions.get());
+        assertEquals(1, vaultClient.validations.get());
+
+        assertEquals("plain text", secrets.get("my.plaintext"));
+        assertEquals(1, vaultClient.decryptions.get());
+    }
+
+    @Test
+    void test_concurrentFirstReadsShareOneCall() {
+        var vaultClient = new FakeVaultClient();
+        var pending = new CompletableFuture<char[]>();
+        vaultClient.nextDecryption = pending;
+
+        var secrets = new LazySecrets(createProperties(), () -> vaultClient);
+        var first = CompletableFuture.supplyAsync(() -> secrets.getSecret("my.secret"));
+        var second = CompletableFuture.supplyAsync(() -> secrets.getSecret("my.secret"));
+
+        while (0 == vaultClient.decryptions.get()) {
+            Thread.onSpinWait();
+        }
+
+        pending.complete("shared".toCharArray());
+
+        assertEquals("shared", first.join());
+        assertEquals("shared", second.join());
+        assertEquals(1, vaultClient.decryptions.get());
+    }
+
+    @Test
+    void test_hidesGruntrHeaderAndUnknownKeys() {
+        var secrets = new LazySecrets(createProperties(), FakeVaultClient::new);
+
+        assertNull(secrets.get("gruntr__sha3"));
+        assertNull(secrets.get("unknown"));
+        assertFalse(secrets.containsKey("gruntr__sha3"));
+        assertTrue(secrets.containsKey("my.secret"));
+        assertEquals(3, secrets.size());
+    }
+
+    @Test
+    void test_failuresAreNotMemoized() {
+        var vaultClient = new FakeVaultClient();
+        vaultClient.nextDecryption = CompletableFuture.failedFuture(new VaultException("unavailable"));
+
+        var secrets = new LazySecrets(createProperties(), () -> vaultClient);
+
+        assertThrows(RuntimeException.class, () -> secrets.getSecret("my.secret"));
+        assertEquals("decrypted:vault:v1:one", secrets.getSecret("my.secret"));
+    }
+
+    @Test
+    void test_valuesAreNotReturnedWhenTheHeaderIsInvalid() {
+        var vaultClient = new FakeVaultClient();
+        vaultClient.nextValidation = CompletableFuture.failedFuture(new IllegalStateException("tampered"));
+
+        var secrets = new LazySecrets(createProperties(), () -> vaultClient);
+
+        assertThrows(IllegalStateException.class, () -> secrets.getSecret("my.secret"));
+        assertEquals("decrypted:vault:v1:one", secrets.getSecret("my.secret"));
+        assertEquals(2, vaultClient.validations.get());
+    }
+
+    @Test
+    void test_envelopeValuesAreDecryptedWithTheHeader() {
+        var vaultClient = new FakeVaultClient();
+        var properties = createProperties();
+        properties.put("my.token", "gruntr:v1:three");
+        properties.put("gruntr__data_key", "vault:v1:key");
+
+        var secrets = new LazySecrets(properties, () -> vaultClient);
+
+        assertEquals("decrypted:gruntr:v1:three", secrets.getSecret("my.token"));
+        assertEquals(0, vaultClient.decryptions.get());
+    }
+
+    @Test
+    void test_toStringEqualsAndHashCodeDoNotDecrypt() {
+        var vaultClient = new FakeVaultClient();
+        var secrets = new LazySecrets(createProperties(), () -> vaultClient);
+        var other = new LazySecrets(createProperties(), () -> vaultClient);
+
+        assertEquals("{my.password=****, my.plaintext=****, my.secret=****}", secrets.toString());
+        assertTrue(secrets.entrySet().iterator().next().toString().endsWith("=****"));
+        assertEquals(secrets, secrets);
+        assertNotEquals(secrets, other);
+        assertEquals(secrets.hashCode(), secrets.hashCode());
+        assertEquals(0, vaultClient.decryptions.get());
+        assertEquals(0, vaultClient.validations.get());
+    }
+
+    private static Properties createProperties() {
+        var properties = new Properties();
+
+        properties.put("my.secret", "vault:v1:one");
+        properties.put("my.password", "vault:v1:two");
+        properties.put("my.plaintext", "plain text");
+        properties.put("gruntr__sha3", "vault:v1:sha");
+
+        return properties;
+    }
+
+    private static final class FakeVaultClient implements VaultTransitRestClient {
+        private final AtomicInteger decryptions = new AtomicInteger();
+        private final AtomicInteger validations = new AtomicInteger();
+        private CompletableFuture<char[]> nextDecryption;
+        private CompletableFuture<Void> nextValidation;
+
+        @Override
+        public CompletableFuture<char[]> decryptAsync(char[] value) {
+            decryptions.incrementAndGet();
+
+            if (null != nextDecryption) {
+                var result = nextDecryption;
+                nextDecryption = null;
+
+                return result;
+            }
+
+            return CompletableFuture.completedFuture(("decrypted:" + String.copyValueOf(value)).toCharArray());
+        }
+
+        @Override
+        public CompletableFuture<Void> validateAsync(Properties properties) {
+            validations.incrementAndGet();
+
+            if (null != nextValidation) {
+                var result = nextValidation;
+                nextValidation = null;
+
+                return result;
+            }
+
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public char[] encrypt(byte[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public char[] decrypt(char[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public char[] rewrap(char[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Properties decrypt(Properties properties) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Properties encrypt(Properties properties) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Properties encrypt(Properties properties, Properties previous) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Properties rewrap(Properties properties) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void validate(Properties properties) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<char[]> encryptAsync(byte[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<char[]> rewrapAsync(char[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Properties> decryptAsync(Properties properties) {
+            // only the header and the requested value are expected
+            assertEquals(3, properties.size());
+
+            var decryptedProperties = new Properties();
+            properties.stringPropertyNames()
+                    .stream()
+                    .filter(key -> !key.startsWith("gruntr__"))
+                    .forEach(key -> decryptedProperties.put(key, "decrypted:" + properties.getProperty(key)));
+
+            return CompletableFuture.completedFuture(decryptedProperties);
+        }
+
+        @Override
+        public CompletableFuture<Properties> encryptAsync(Properties properties) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Properties> encryptAsync(Properties properties, Properties previous) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Properties> rewrapAsync(Properties properties) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            //no-op
+        }
+    }
+}
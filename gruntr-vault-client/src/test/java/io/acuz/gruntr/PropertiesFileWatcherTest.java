@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023. Gruntr/ACUZIO BV
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * version 2 as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0.html
+ *
+ */
+
+package io.acuz.gruntr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PropertiesFileWatcherTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void test_runsCallbackWhenTheFileChanges() throws IOException, InterruptedException {
+        var file = Files.writeString(directory.resolve("application.properties"), "a=1");
+        var changes = new Semaphore(0);
+
+        var watcher = new PropertiesFileWatcher(file, changes::release);
+
+        try {
+            Files.writeString(directory.resolve("other.properties"), "b=2");
+            assertFalse(changes.tryAcquire(1, TimeUnit.SECONDS));
+
+            Files.writeString(file, "a=2");
+            // some platforms poll for changes, allow for it
+            assertTrue(changes.tryAcquire(30, TimeUnit.SECONDS));
+        } finally {
+            watcher.close();
+        }
+    }
+}
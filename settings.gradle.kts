@@ -18,3 +18,5 @@ rootProject.name = "Gruntr Vault Client"
 include("gruntr-vault-client-cli")
 include("gruntr-vault-client-api")
 include("gruntr-vault-client")
+include("gruntr-vault-client-jmh")
+include("gruntr-vault-client-test-fixtures")